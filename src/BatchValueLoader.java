@@ -0,0 +1,15 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量值加载器
+ */
+public interface BatchValueLoader<K, V> {
+
+    /**
+     * 批量加载，不存在的key可不返回
+     * @param keys
+     * @return
+     */
+    Map<K, V> getAll(List<K> keys);
+}
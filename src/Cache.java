@@ -1,6 +1,7 @@
 
 
 import java.lang.Exception;
+import java.util.function.BiFunction;
 
 /**
  * @author quyan
@@ -26,6 +27,46 @@ public interface Cache<K, V> {
 
         int incrSet();
 
+        /**
+         * 压缩一次
+         * @param rawBytes 压缩前字节数
+         * @param compressedBytes 压缩后字节数
+         * @param nanos 耗时
+         */
+        void incrCompress(long rawBytes, long compressedBytes, long nanos);
+
+        /**
+         * 解压一次
+         * @param nanos 耗时
+         */
+        void incrDecompress(long nanos);
+
+        /**
+         * 预取加入一次
+         * @return
+         */
+        int incrPrefetch();
+
+        /**
+         * 预取的Entry被首次命中
+         * @return
+         */
+        int incrPrefetchHit();
+
+        int getGet();
+
+        int getHits();
+
+        int getLRU();
+
+        int getCleanup();
+
+        int getSet();
+
+        int getPrefetch();
+
+        int getPrefetchHit();
+
         void print();
     }
 
@@ -38,12 +79,50 @@ public interface Cache<K, V> {
     V get(K key) throws Exception;
 
     /**
-     * 加入缓存
+     * 加入缓存，已存在时更新
      * @param key
      * @param value
      */
     void set(K key, V value);
 
+    /**
+     * 计算新值，返回null时删除
+     * 函数在持有key的锁时执行，应简短，不应更新本缓存的其他key(可能死锁)
+     * @param key
+     * @param remappingFunction (key, 当前值或null) -> 新值
+     * @return 新值
+     */
+    V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction);
+
+    /**
+     * 不存在时加入value，存在时合并，返回null时删除
+     * 函数在持有key的锁时执行，限制同compute
+     * @param key
+     * @param value
+     * @param remappingFunction (当前值, value) -> 新值
+     * @return 新值
+     */
+    V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction);
+
+    /**
+     * 存在时替换
+     * @param key
+     * @param value
+     * @return 原值，不存在时返回null
+     */
+    V replace(K key, V value);
+
+    /**
+     * 删除缓存
+     * @param key
+     */
+    void invalidate(K key);
+
+    /**
+     * 清空缓存
+     */
+    void invalidateAll();
+
     /**
      * 值加载器
      * @return
@@ -0,0 +1,158 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRUCache吞吐量
+ * 只使用基线版本已有的API(maximumSize/expire、get/set)，可复制到其他版本中编译运行对比
+ * get: 读取已存在的key
+ * set: 写入未缓存的新key，触发LRU淘汰
+ * miss: 读取未缓存的key，经Loader加载后加入
+ * mixed: 90%读取已存在的key + 10%写入新key
+ * 每轮使用新建的缓存；key经过乱序，连续的Integer key会使ConcurrentHashMap按内存顺序访问桶及节点，结果偏高
+ *
+ * 用法: CacheBenchmark [durationMillis] [threads...]
+ */
+public class CacheBenchmark {
+    /**
+     * 最大容量
+     */
+    static final int MAXIMUM_SIZE = 100000;
+    /**
+     * 预置数据数，低于高水位
+     */
+    static final int ENTRIES = MAXIMUM_SIZE / 2;
+    /**
+     * 每个线程的新key区间
+     */
+    static final int STRIDE = 1 << 23;
+
+    interface Workload {
+        void run(LRUCache<Integer, Integer> cache, Random random, int thread, long i) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long duration = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int[] threads = new int[]{1, 4, 16};
+        if (args.length > 1) {
+            threads = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threads[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        Workload get = new Workload() {
+            @Override
+            public void run(LRUCache<Integer, Integer> cache, Random random, int thread, long i) throws Exception {
+                cache.get(key(random.nextInt(ENTRIES)));
+            }
+        };
+        Workload set = new Workload() {
+            @Override
+            public void run(LRUCache<Integer, Integer> cache, Random random, int thread, long i) {
+                int key = newKey(thread, i);
+                cache.set(key, key);
+            }
+        };
+        Workload miss = new Workload() {
+            @Override
+            public void run(LRUCache<Integer, Integer> cache, Random random, int thread, long i) throws Exception {
+                cache.get(newKey(thread, i));
+            }
+        };
+        Workload mixed = new Workload() {
+            @Override
+            public void run(LRUCache<Integer, Integer> cache, Random random, int thread, long i) throws Exception {
+                if (random.nextInt(10) == 0) {
+                    int key = newKey(thread, i);
+                    cache.set(key, key);
+                } else {
+                    cache.get(key(random.nextInt(ENTRIES)));
+                }
+            }
+        };
+
+        LoggerUtils.error("%-10s %8s %16s", "workload", "threads", "ops/s");
+        for (int t : threads) {
+            report("get", t, duration, get);
+            report("set", t, duration, set);
+            report("miss", t, duration, miss);
+            report("mixed", t, duration, mixed);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * 第i个key，奇数乘法为一一映射，不同i的key不重复
+     * @param i
+     * @return
+     */
+    static int key(int i) {
+        return i * 0x9E3779B1;
+    }
+
+    static int newKey(int thread, long i) {
+        return key(ENTRIES + thread * STRIDE + (int) (i % STRIDE));
+    }
+
+    static void report(String name, int threads, long duration, Workload workload) throws Exception {
+        // 预热
+        run(threads, duration / 4, workload);
+        LoggerUtils.error("%-10s %8d %16d", name, threads, run(threads, duration, workload));
+    }
+
+    static long run(int threads, long duration, final Workload workload) throws Exception {
+        final LRUCache<Integer, Integer> cache = newCache();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong ops = new AtomicLong();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            final int thread = i;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(thread);
+                    long count = 0;
+                    try {
+                        start.await();
+                        while (System.nanoTime() < deadline) {
+                            for (int j = 0; j < 64; j++) {
+                                workload.run(cache, random, thread, count + j);
+                            }
+                            count += 64;
+                        }
+                    } catch (Exception e) {
+                        LoggerUtils.error("worker error: %s", e);
+                    }
+                    ops.addAndGet(count);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.get() * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - begin);
+    }
+
+    static LRUCache<Integer, Integer> newCache() throws Exception {
+        LRUCache<Integer, Integer> cache = new LRUCache<Integer, Integer>(new LRUCacheBuilder<Integer, Integer>()
+                .maximumSize(MAXIMUM_SIZE).expire(1, TimeUnit.HOURS), new ValueLoader<Integer, Integer>() {
+            @Override
+            public Integer get(Integer key) {
+                return key;
+            }
+        });
+        for (int i = 0; i < ENTRIES; i++) {
+            cache.set(key(i), i);
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,118 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR事件
+ * 未开启录制时isEnabled()为false，事件对象由JIT消除，几乎无开销
+ * 高频事件默认设置阈值，可在.jfc配置中覆盖
+ */
+public final class CacheEvents {
+
+    private CacheEvents() {
+    }
+
+    /**
+     * 访问缓冲处理 + LRU淘汰，仅在有处理或淘汰时提交
+     */
+    @Name("lru.Maintenance")
+    @Label("Maintenance Pass")
+    @Threshold("1 ms")
+    @Category("LRU Cache")
+    @Description("访问缓冲处理及LRU淘汰")
+    @StackTrace(false)
+    public static class Maintenance extends Event {
+        @Label("Cleaned Nodes")
+        int cleaned;
+
+        @Label("Evicted Entries")
+        int evicted;
+
+        @Label("Cache Size")
+        int size;
+    }
+
+    /**
+     * 单次LRU淘汰
+     */
+    @Name("lru.Eviction")
+    @Label("Eviction Batch")
+    @Threshold("1 ms")
+    @Category("LRU Cache")
+    @StackTrace(false)
+    public static class Eviction extends Event {
+        @Label("Evicted Entries")
+        int evicted;
+
+        @Label("Cache Size")
+        int size;
+
+        @Label("Capacity")
+        int capacity;
+    }
+
+    /**
+     * 访问缓冲超过高水位
+     */
+    @Name("lru.CleanUpHighWaterMark")
+    @Label("CleanUp High Water Mark")
+    @Category("LRU Cache")
+    @StackTrace(false)
+    public static class CleanUpHighWaterMark extends Event {
+        @Label("Queue Depth")
+        int queueDepth;
+
+        @Label("High Water Mark")
+        int highWaterMark;
+
+        @Label("Forced")
+        @Description("访问缓冲已满，之后的访问记录被丢弃直至下次处理")
+        boolean forced;
+    }
+
+    /**
+     * Loader加载
+     */
+    @Name("lru.LoaderCall")
+    @Label("Loader Call")
+    @Threshold("1 ms")
+    @Category("LRU Cache")
+    public static class LoaderCall extends Event {
+        @Label("Key")
+        String key;
+
+        @Label("Loader")
+        Class<?> loader;
+    }
+
+    /**
+     * 锁等待
+     */
+    @Name("lru.LockWait")
+    @Label("Lock Wait")
+    @Threshold("1 ms")
+    @Category("LRU Cache")
+    public static class LockWait extends Event {
+        @Label("Lock")
+        String lock;
+    }
+
+    /**
+     * 计数器晋升热点数据
+     */
+    @Name("lru.Promotion")
+    @Label("Promotion")
+    @Category("LRU Cache")
+    @StackTrace(false)
+    public static class Promotion extends Event {
+        @Label("Key")
+        String key;
+
+        @Label("Count")
+        int count;
+    }
+}
@@ -0,0 +1,62 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个Entry的内存占用
+ * 写入N个数据并全部访问一次，通过GC后的堆使用量差值计算字节数，
+ * 扣除key/value本身后即为缓存结构的开销
+ *
+ * 用法: java -Xmx2g CacheFootprint [entries]
+ */
+public class CacheFootprint {
+
+    public static void main(String[] args) throws Exception {
+        final int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final String value = "v";
+
+        long base = usedHeap();
+        // key本身
+        Integer[] keys = new Integer[entries];
+        for (int i = 0; i < entries; i++) {
+            keys[i] = Integer.valueOf(i);
+        }
+        long payload = usedHeap() - base;
+
+        LRUCache<Integer, String> cache = new LRUCache<Integer, String>(new LRUCacheBuilder<Integer, String>()
+                .maximumSize(entries * 2).cleanUpFactor(3).expire(1, TimeUnit.HOURS),
+                new ValueLoader<Integer, String>() {
+                    @Override
+                    public String get(Integer key) {
+                        return value;
+                    }
+                });
+        for (int i = 0; i < entries; i++) {
+            cache.set(keys[i], value);
+        }
+        // 每个数据访问一次，LRU调整
+        for (int i = 0; i < entries; i++) {
+            cache.get(keys[i]);
+        }
+        long total = usedHeap() - base;
+
+        LoggerUtils.error("entries : %s", cache.size());
+        LoggerUtils.error("total bytes/entry : %.1f", (double) total / entries);
+        LoggerUtils.error("key bytes/entry : %.1f", (double) payload / entries);
+        LoggerUtils.error("cache bytes/entry : %.1f", (double) (total - payload) / entries);
+
+        // 保持引用到测量结束
+        if (keys.length != cache.size()) {
+            LoggerUtils.error("unexpected size %s", cache.size());
+        }
+    }
+
+    static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
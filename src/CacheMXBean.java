@@ -0,0 +1,74 @@
+/**
+ * 缓存JMX管理接口
+ */
+public interface CacheMXBean {
+
+    String getName();
+
+    /**
+     * 当前缓存size
+     * @return
+     */
+    int getSize();
+
+    /**
+     * 当前有效容量
+     * @return
+     */
+    int getCapacity();
+
+    /**
+     * 访问缓冲待处理数
+     * @return
+     */
+    int getCleanUpQueueDepth();
+
+    long getExpireMillis();
+
+    /**
+     * 修改全局超时时间，对之后新增/更新的数据生效；配置了Expiry时不生效
+     * @param expireMillis
+     */
+    void setExpireMillis(long expireMillis);
+
+    int getCleanUpFactor();
+
+    /**
+     * 修改访问缓冲容量因子，范围[2, 10]
+     * @param cleanUpFactor
+     */
+    void setCleanUpFactor(int cleanUpFactor);
+
+    int getGetCount();
+
+    int getHitCount();
+
+    double getHitRate();
+
+    int getSetCount();
+
+    int getLRUCount();
+
+    int getCleanupCount();
+
+    int getPrefetchCount();
+
+    int getPrefetchHitCount();
+
+    /**
+     * 预取命中数/预取数
+     * @return
+     */
+    double getPrefetchAccuracy();
+
+    /**
+     * 调整最大容量，超出高水位的数据立即淘汰
+     * @param maximumSize
+     */
+    void resize(int maximumSize);
+
+    /**
+     * 清空缓存
+     */
+    void clear();
+}
@@ -0,0 +1,111 @@
+/**
+ * 缓存JMX管理实现
+ */
+public class CacheManagement implements CacheMXBean {
+
+    private final String name;
+
+    private final LRUCache<?, ?> cache;
+
+    public CacheManagement(String name, LRUCache<?, ?> cache) {
+        this.name = name;
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return cache.capacity();
+    }
+
+    @Override
+    public int getCleanUpQueueDepth() {
+        return cache.cleanUpQueueDepth();
+    }
+
+    @Override
+    public long getExpireMillis() {
+        return cache.getExpireMillis();
+    }
+
+    @Override
+    public void setExpireMillis(long expireMillis) {
+        cache.setExpireMillis(expireMillis);
+    }
+
+    @Override
+    public int getCleanUpFactor() {
+        return cache.getCleanUpFactor();
+    }
+
+    @Override
+    public void setCleanUpFactor(int cleanUpFactor) {
+        cache.setCleanUpFactor(cleanUpFactor);
+    }
+
+    @Override
+    public int getGetCount() {
+        return cache.stat().getGet();
+    }
+
+    @Override
+    public int getHitCount() {
+        return cache.stat().getHits();
+    }
+
+    @Override
+    public double getHitRate() {
+        int get = cache.stat().getGet();
+        return get == 0 ? 0 : (double) cache.stat().getHits() / get;
+    }
+
+    @Override
+    public int getSetCount() {
+        return cache.stat().getSet();
+    }
+
+    @Override
+    public int getLRUCount() {
+        return cache.stat().getLRU();
+    }
+
+    @Override
+    public int getCleanupCount() {
+        return cache.stat().getCleanup();
+    }
+
+    @Override
+    public int getPrefetchCount() {
+        return cache.stat().getPrefetch();
+    }
+
+    @Override
+    public int getPrefetchHitCount() {
+        return cache.stat().getPrefetchHit();
+    }
+
+    @Override
+    public double getPrefetchAccuracy() {
+        int prefetch = cache.stat().getPrefetch();
+        return prefetch == 0 ? 0 : (double) cache.stat().getPrefetchHit() / prefetch;
+    }
+
+    @Override
+    public void resize(int maximumSize) {
+        cache.setMaximumSize(maximumSize);
+    }
+
+    @Override
+    public void clear() {
+        cache.invalidateAll();
+    }
+}
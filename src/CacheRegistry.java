@@ -0,0 +1,73 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存注册表
+ * 配置了name的缓存以lru:type=Cache,name=<name>注册为MBean，shutdown时注销
+ */
+public final class CacheRegistry {
+    static final String DOMAIN = "lru";
+
+    private static final Map<String, LRUCache<?, ?>> caches = new ConcurrentHashMap<String, LRUCache<?, ?>>();
+
+    private CacheRegistry() {
+    }
+
+    /**
+     * 注册缓存
+     * @param name
+     * @param cache
+     */
+    public static void register(String name, LRUCache<?, ?> cache) {
+        if (name == null) {
+            throw new IllegalArgumentException("name required");
+        }
+        if (caches.putIfAbsent(name, cache) != null) {
+            throw new IllegalArgumentException("duplicate cache name: " + name);
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new CacheManagement(name, cache), objectName(name));
+        } catch (JMException e) {
+            caches.remove(name);
+            throw new IllegalStateException("register cache mbean failed: " + name, e);
+        }
+    }
+
+    /**
+     * 注销缓存
+     * @param name
+     */
+    public static void unregister(String name) {
+        if (caches.remove(name) == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LoggerUtils.error("注销缓存失败:%s %s", name, e);
+        }
+    }
+
+    public static LRUCache<?, ?> get(String name) {
+        return caches.get(name);
+    }
+
+    public static Set<String> names() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    static ObjectName objectName(String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Cache,name=" + ObjectName.quote(name));
+    }
+}
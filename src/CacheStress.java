@@ -0,0 +1,333 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * 多线程压力测试
+ * 1~128线程混合执行get/set/过期，记录各线程数下的吞吐量，结束后校验:
+ * 1. head到tail的LRU链表完整性
+ * 2. localCache与LRU链表一致性
+ * 3. size超出maximumSize的上限
+ * 压测前单线程校验淘汰顺序：访问缓冲中刚被读取的key不能按最久未使用被淘汰；compute函数内触发淘汰时结果不丢失
+ * 失败时输出seed，使用相同参数可复现
+ *
+ * 用法: CacheStress [durationMillis] [maxThreads] [seed]
+ */
+public class CacheStress {
+    /**
+     * 最大容量
+     */
+    static final int MAXIMUM_SIZE = 1000;
+    /**
+     * key范围
+     */
+    static final int KEY_SPACE = MAXIMUM_SIZE * 4;
+    /**
+     * 超时时间
+     */
+    static final long EXPIRE_MILLIS = 20;
+    /**
+     * 允许超出最大容量的比例
+     */
+    static final double OVERSHOOT_RATIO = 0.5;
+
+    public static void main(String[] args) throws Exception {
+        long duration = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+
+        LoggerUtils.error("duration=%sms maxThreads=%s seed=%s", duration, maxThreads, seed);
+        LoggerUtils.error("%8s %14s %14s %8s", "threads", "ops/s", "ops/s/thread", "maxSize");
+
+        // 预热，排除类加载及JIT对第一轮的影响
+        run(1, Math.min(duration, 500), seed);
+
+        List<String> failures = new ArrayList<String>();
+        String order = checkLruOrder();
+        if (order != null) {
+            failures.add(order);
+        }
+        String compute = checkReentrantCompute();
+        if (compute != null) {
+            failures.add(compute);
+        }
+        for (int threads = 1; threads <= maxThreads; threads <<= 1) {
+            Result result = run(threads, duration, seed);
+            LoggerUtils.error("%8d %14d %14d %8d", threads, result.throughput(),
+                    result.throughput() / threads, result.maxSize);
+            for (String failure : result.failures) {
+                failures.add(String.format("threads=%d seed=%d: %s", threads, seed, failure));
+            }
+            // 卡住的线程仍在运行，后续结果无意义
+            if (result.hang) {
+                break;
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            for (String failure : failures) {
+                LoggerUtils.error("FAILED %s", failure);
+            }
+            System.exit(1);
+        }
+        LoggerUtils.error("OK");
+        System.exit(0);
+    }
+
+    /**
+     * 指定线程数运行一轮
+     * @param threads
+     * @param duration
+     * @param seed
+     * @return
+     * @throws InterruptedException
+     */
+    static Result run(final int threads, long duration, long seed) throws InterruptedException {
+        final LRUCache<Integer, Integer> cache = newCache();
+        final Result result = new Result();
+        final AtomicLong ops = new AtomicLong();
+        final AtomicInteger maxSize = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            // 每个线程独立的随机序列
+            final Random random = new Random(seed * 31 + threads * 1024 + i);
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    try {
+                        start.await();
+                        while (System.nanoTime() < deadline) {
+                            int key = random.nextInt(KEY_SPACE);
+                            int op = random.nextInt(100);
+                            if (op < 70) {
+                                cache.get(key);
+                            } else {
+                                cache.set(key, key);
+                            }
+                            count++;
+                            // 采样size
+                            if ((count & 63) == 0) {
+                                int size = cache.size();
+                                int max;
+                                while (size > (max = maxSize.get()) && !maxSize.compareAndSet(max, size)) {
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (result) {
+                            result.failures.add("worker error: " + e);
+                        }
+                    }
+                    ops.addAndGet(count);
+                }
+            }, "stress-" + threads + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            // 超时视为死锁/活锁
+            worker.join(duration + 10000);
+            if (worker.isAlive()) {
+                result.failures.add("worker hang: " + worker.getName());
+                result.hang = true;
+                result.elapsedNanos = System.nanoTime() - begin;
+                result.ops = ops.get();
+                return result;
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - begin;
+        result.ops = ops.get();
+        result.maxSize = Math.max(maxSize.get(), cache.size());
+
+        verify(cache, result);
+        cache.shutdown();
+        return result;
+    }
+
+    static LRUCache<Integer, Integer> newCache() {
+        LRUCacheBuilder<Integer, Integer> builder = new LRUCacheBuilder<Integer, Integer>()
+                .maximumSize(MAXIMUM_SIZE).cleanUpFactor(3).expire(EXPIRE_MILLIS, TimeUnit.MILLISECONDS)
+                .expireAfter(new Expiry<Integer, Integer>() {
+                    @Override
+                    public long expireAfterCreate(Integer key, Integer value, long currentTime) {
+                        // 部分key快速过期
+                        return key % 10 == 0 ? 1 : EXPIRE_MILLIS;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Integer key, Integer value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Integer key, Integer value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                });
+        return new LRUCache<Integer, Integer>(builder, new ValueLoader<Integer, Integer>() {
+            @Override
+            public Integer get(Integer key) {
+                return key;
+            }
+        });
+    }
+
+    /**
+     * 单线程淘汰顺序：写入0~5，读取0后写入新key，应淘汰1而不是0
+     * 读取记录仍在访问缓冲中(未到缓冲高水位)，淘汰前需先处理
+     * @return 失败信息，通过时返回null
+     * @throws Exception
+     */
+    static String checkLruOrder() throws Exception {
+        LRUCache<Integer, Integer> cache = new LRUCache<Integer, Integer>(new LRUCacheBuilder<Integer, Integer>()
+                .maximumSize(8).expire(1, TimeUnit.MINUTES), new ValueLoader<Integer, Integer>() {
+            @Override
+            public Integer get(Integer key) {
+                return key;
+            }
+        });
+        try {
+            for (int i = 0; i < 6; i++) {
+                cache.set(i, i);
+            }
+            for (int i = 0; i < 5; i++) {
+                cache.get(0);
+            }
+            cache.set(100, 100);
+            if (cache.getEntry(0) == null || cache.getEntry(1) != null) {
+                return "lru order: recently read key 0 evicted=" + (cache.getEntry(0) == null)
+                        + ", oldest key 1 evicted=" + (cache.getEntry(1) == null);
+            }
+            return null;
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    /**
+     * compute函数内读取其他key触发淘汰：写入1~3后compute(1)，函数内加载新key淘汰1，计算结果不能丢失
+     * @return 失败信息，通过时返回null
+     */
+    static String checkReentrantCompute() {
+        final LRUCache<Integer, Integer> cache = new LRUCache<Integer, Integer>(new LRUCacheBuilder<Integer, Integer>()
+                .maximumSize(4).expire(1, TimeUnit.MINUTES), new ValueLoader<Integer, Integer>() {
+            @Override
+            public Integer get(Integer key) {
+                return key;
+            }
+        });
+        try {
+            for (int i = 1; i <= 3; i++) {
+                cache.set(i, i);
+            }
+            Integer result = cache.compute(1, new BiFunction<Integer, Integer, Integer>() {
+                @Override
+                public Integer apply(Integer key, Integer value) {
+                    try {
+                        cache.get(50);
+                        cache.get(51);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return 100;
+                }
+            });
+            LRUCache.Entry<Integer, Integer> entry = cache.getEntry(1);
+            if (result != 100 || entry == null || entry.value != 100) {
+                return "reentrant compute: result=" + result + ", cached=" + (entry == null ? null : entry.value);
+            }
+            return null;
+        } finally {
+            cache.shutdown();
+        }
+    }
+
+    /**
+     * 校验不变量，线程全部结束后调用
+     * 写入线程不等待lruLock，先处理写缓冲中尚未加入链表的记录
+     * @param cache
+     * @param result
+     */
+    static void verify(LRUCache<Integer, Integer> cache, Result result) {
+        cache.lru();
+        Map<LRUCache.Entry, Boolean> visited = new IdentityHashMap<LRUCache.Entry, Boolean>();
+        // 链表长度上限，超出视为成环
+        long limit = (long) cache.size() * 16 + 1000000;
+
+        // head -> tail 完整性
+        LRUCache.Entry prev = null;
+        LRUCache.Entry node = cache.head;
+        long steps = 0;
+        int broken = 0;
+        while (node != null) {
+            if (visited.put(node, Boolean.TRUE) != null || ++steps > limit) {
+                result.failures.add("cycle in lru list at step " + steps);
+                return;
+            }
+            if (prev != null && node.prev != prev) {
+                broken++;
+            }
+            prev = node;
+            node = node.next;
+        }
+        if (broken > 0) {
+            result.failures.add(broken + " broken prev links in lru list");
+        }
+        if (prev != cache.tail) {
+            result.failures.add("tail not reachable from head");
+        }
+
+        // localCache与链表一致
+        int lost = 0;
+        int ghost = 0;
+        for (LRUCache.Entry<Integer, Integer> entry : cache.localCache) {
+            if (!visited.containsKey(entry)) {
+                lost++;
+            }
+        }
+        for (LRUCache.Entry entry : visited.keySet()) {
+            if (cache.localCache.get(entry.key) != entry) {
+                ghost++;
+            }
+        }
+        if (lost > 0) {
+            result.failures.add(lost + " cached entries lost from lru list");
+        }
+        if (ghost > 0) {
+            result.failures.add(ghost + " lru list entries missing from localCache");
+        }
+
+        // size超出上限
+        int bound = (int) (MAXIMUM_SIZE * (1 + OVERSHOOT_RATIO));
+        if (result.maxSize > bound) {
+            result.failures.add("size overshoot " + result.maxSize + " > " + bound);
+        }
+    }
+
+    static class Result {
+        long ops;
+        long elapsedNanos;
+        int maxSize;
+        boolean hang;
+        List<String> failures = new ArrayList<String>();
+
+        long throughput() {
+            return elapsedNanos == 0 ? 0 : ops * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        }
+    }
+}
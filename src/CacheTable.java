@@ -0,0 +1,425 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * localCache专用的开放寻址哈希表
+ * 1. 槽位直接存放Entry，Entry自带key及LRU链表/过期时间，无额外节点对象
+ * 2. 按hash高位分为SEGMENTS个分段，每个分段独立加锁、独立扩容，不同分段的写入互不阻塞
+ * 3. 读取无锁，不创建对象
+ * 4. size为写入时维护的计数，O(1)读取
+ * 5. 删除留下墓碑，扩容时统一清理；新表构建完成后整体发布，读线程不受影响
+ */
+public class CacheTable<K, V> implements Iterable<LRUCache.Entry<K, V>> {
+    /**
+     * 分段数
+     */
+    static final int SEGMENTS = 16;
+    /**
+     * hash右移位数，高4位选择分段
+     */
+    static final int SEGMENT_SHIFT = 28;
+    /**
+     * 分段最小容量
+     */
+    static final int MINIMUM_CAPACITY = 16;
+    /**
+     * 初始最大容量，超出后按需扩容
+     */
+    static final int MAXIMUM_INITIAL_CAPACITY = 1 << 16;
+    /**
+     * 分段最大容量
+     */
+    static final int MAXIMUM_CAPACITY = 1 << 26;
+    /**
+     * 墓碑
+     */
+    static final LRUCache.Entry TOMBSTONE = new LRUCache.Entry(null, null);
+
+    private final Segment<K, V>[] segments;
+    /**
+     * 数据数
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    public CacheTable(int expectedSize) {
+        int n = Math.min(Math.max(expectedSize, 0), MAXIMUM_INITIAL_CAPACITY);
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<K, V>(size, tableSizeFor(n * 2 / SEGMENTS));
+        }
+    }
+
+    /**
+     * key所在分段的写锁，持有时可对该key连续执行多个写操作
+     * @param key
+     * @return
+     */
+    public ReentrantLock lockFor(Object key) {
+        return segmentFor(hash(key));
+    }
+
+    /**
+     * 当前线程是否持有任一分段锁
+     * @return
+     */
+    public boolean isLockedByCurrentThread() {
+        for (Segment<K, V> segment : segments) {
+            if (segment.isHeldByCurrentThread()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查询，无锁
+     * @param key
+     * @return
+     */
+    public LRUCache.Entry<K, V> get(Object key) {
+        int h = hash(key);
+        return segmentFor(h).get(key, h);
+    }
+
+    /**
+     * 不存在时加入
+     * @param key
+     * @param entry
+     * @return 已存在的Entry，加入成功返回null
+     */
+    public LRUCache.Entry<K, V> putIfAbsent(K key, LRUCache.Entry<K, V> entry) {
+        int h = hash(key);
+        return segmentFor(h).put(key, h, entry, true);
+    }
+
+    /**
+     * 加入或替换
+     * @param key
+     * @param entry
+     * @return 被替换的Entry
+     */
+    public LRUCache.Entry<K, V> put(K key, LRUCache.Entry<K, V> entry) {
+        int h = hash(key);
+        return segmentFor(h).put(key, h, entry, false);
+    }
+
+    /**
+     * 删除
+     * @param key
+     * @return 被删除的Entry
+     */
+    public LRUCache.Entry<K, V> remove(Object key) {
+        int h = hash(key);
+        return segmentFor(h).remove(key, h, null);
+    }
+
+    /**
+     * 当前Entry为entry时删除
+     * @param key
+     * @param entry
+     * @return
+     */
+    public boolean remove(Object key, LRUCache.Entry<K, V> entry) {
+        int h = hash(key);
+        return segmentFor(h).remove(key, h, entry) != null;
+    }
+
+    /**
+     * 逐个分段清空，并发写入其他分段的数据可能保留
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 当前槽位数
+     * @return
+     */
+    public int capacity() {
+        int capacity = 0;
+        for (Segment<K, V> segment : segments) {
+            capacity += segment.table.length();
+        }
+        return capacity;
+    }
+
+    /**
+     * 遍历当前数据，弱一致
+     * @return
+     */
+    @Override
+    public Iterator<LRUCache.Entry<K, V>> iterator() {
+        return new Iterator<LRUCache.Entry<K, V>>() {
+            int segment = -1;
+            AtomicReferenceArray<LRUCache.Entry<K, V>> t = new AtomicReferenceArray<LRUCache.Entry<K, V>>(0);
+            int index = advance(0);
+
+            int advance(int i) {
+                for (;;) {
+                    for (; i < t.length(); i++) {
+                        LRUCache.Entry<K, V> e = t.get(i);
+                        if (e != null && e != TOMBSTONE) {
+                            return i;
+                        }
+                    }
+                    if (++segment >= SEGMENTS) {
+                        return i;
+                    }
+                    t = segments[segment].table;
+                    i = 0;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < t.length();
+            }
+
+            @Override
+            public LRUCache.Entry<K, V> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                LRUCache.Entry<K, V> e = t.get(index);
+                index = advance(index + 1);
+                return e;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private Segment<K, V> segmentFor(int h) {
+        return segments[h >>> SEGMENT_SHIFT];
+    }
+
+    static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    static int tableSizeFor(int n) {
+        if (n <= MINIMUM_CAPACITY) {
+            return MINIMUM_CAPACITY;
+        }
+        if (n >= MAXIMUM_CAPACITY) {
+            return MAXIMUM_CAPACITY;
+        }
+        return Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * 分段，自身即为写锁
+     * 槽位按hash低位定位，高位已用于选择分段
+     * @param <K>
+     * @param <V>
+     */
+    static final class Segment<K, V> extends ReentrantLock {
+        /**
+         * 全表数据数
+         */
+        private final AtomicInteger size;
+
+        volatile AtomicReferenceArray<LRUCache.Entry<K, V>> table;
+        /**
+         * 分段数据数，锁保护
+         */
+        private int count;
+        /**
+         * 数据数 + 墓碑数，锁保护
+         */
+        private int used;
+        /**
+         * 扩容阈值，锁保护
+         */
+        private int threshold;
+
+        Segment(AtomicInteger size, int capacity) {
+            this.size = size;
+            this.table = newTable(capacity);
+        }
+
+        /**
+         * 查询，无锁
+         * @param key
+         * @param h
+         * @return
+         */
+        LRUCache.Entry<K, V> get(Object key, int h) {
+            AtomicReferenceArray<LRUCache.Entry<K, V>> t = table;
+            int mask = t.length() - 1;
+            int i = h & mask;
+            for (int probe = 0; probe <= mask; probe++) {
+                LRUCache.Entry<K, V> e = t.get(i);
+                if (e == null) {
+                    return null;
+                }
+                if (e != TOMBSTONE && (e.key == key || key.equals(e.key))) {
+                    return e;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * 加入
+         * @param key
+         * @param h
+         * @param entry
+         * @param onlyIfAbsent 已存在时不替换
+         * @return 已存在的Entry
+         */
+        LRUCache.Entry<K, V> put(K key, int h, LRUCache.Entry<K, V> entry, boolean onlyIfAbsent) {
+            lock();
+            try {
+                int index = find(key, h);
+                if (index >= 0) {
+                    LRUCache.Entry<K, V> old = table.get(index);
+                    if (!onlyIfAbsent) {
+                        table.set(index, entry);
+                    }
+                    return old;
+                }
+                insert(entry, h, -index - 1);
+                return null;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 删除
+         * @param key
+         * @param h
+         * @param expect 当前Entry为expect时删除，null时不校验
+         * @return 被删除的Entry
+         */
+        LRUCache.Entry<K, V> remove(Object key, int h, LRUCache.Entry<K, V> expect) {
+            lock();
+            try {
+                int index = find(key, h);
+                if (index < 0) {
+                    return null;
+                }
+                LRUCache.Entry<K, V> old = table.get(index);
+                if (expect != null && old != expect) {
+                    return null;
+                }
+                table.set(index, TOMBSTONE);
+                count--;
+                size.decrementAndGet();
+                return old;
+            } finally {
+                unlock();
+            }
+        }
+
+        void clear() {
+            lock();
+            try {
+                table = newTable(MINIMUM_CAPACITY);
+                size.addAndGet(-count);
+                count = 0;
+            } finally {
+                unlock();
+            }
+        }
+
+        /**
+         * 查找key的槽位，持有锁时调用
+         * @param key
+         * @param h
+         * @return 存在时返回槽位，否则返回 -(可插入槽位) - 1
+         */
+        private int find(Object key, int h) {
+            AtomicReferenceArray<LRUCache.Entry<K, V>> t = table;
+            int mask = t.length() - 1;
+            int i = h & mask;
+            int free = -1;
+            for (int probe = 0; probe <= mask; probe++) {
+                LRUCache.Entry<K, V> e = t.get(i);
+                if (e == null) {
+                    return -(free >= 0 ? free : i) - 1;
+                }
+                if (e == TOMBSTONE) {
+                    if (free < 0) {
+                        free = i;
+                    }
+                } else if ((e.key == key || key.equals(e.key))) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            // 已遍历整表，阈值保证存在墓碑
+            return -free - 1;
+        }
+
+        /**
+         * 插入空槽位，持有锁时调用
+         * @param entry
+         * @param h
+         * @param index
+         */
+        private void insert(LRUCache.Entry<K, V> entry, int h, int index) {
+            AtomicReferenceArray<LRUCache.Entry<K, V>> t = table;
+            if (t.get(index) == null) {
+                // 占用新槽位
+                if (used + 1 > threshold) {
+                    rehash(count + 1);
+                    t = table;
+                    index = -find(entry.key, h) - 1;
+                } else {
+                    used++;
+                }
+            }
+            t.set(index, entry);
+            count++;
+            size.incrementAndGet();
+        }
+
+        /**
+         * 按数据数重建，清理墓碑，持有锁时调用
+         * @param expected
+         */
+        private void rehash(int expected) {
+            AtomicReferenceArray<LRUCache.Entry<K, V>> old = table;
+            AtomicReferenceArray<LRUCache.Entry<K, V>> t = newTable(tableSizeFor((int) Math.min((long) expected * 2, MAXIMUM_CAPACITY)));
+            int mask = t.length() - 1;
+            int n = 0;
+            for (int i = 0; i < old.length(); i++) {
+                LRUCache.Entry<K, V> e = old.get(i);
+                if (e == null || e == TOMBSTONE) {
+                    continue;
+                }
+                int j = hash(e.key) & mask;
+                while (t.get(j) != null) {
+                    j = (j + 1) & mask;
+                }
+                t.lazySet(j, e);
+                n++;
+            }
+            // 新表发布
+            table = t;
+            used = n + 1;
+        }
+
+        private AtomicReferenceArray<LRUCache.Entry<K, V>> newTable(int length) {
+            threshold = (int) (length * 0.75);
+            used = 0;
+            return new AtomicReferenceArray<LRUCache.Entry<K, V>>(length);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CacheTable与ConcurrentHashMap对比，整个缓存的对比见CacheBenchmark
+ * get: 随机读取已存在的key
+ * set: 写入未预置的新key + size()，对应_set的高水位判断；写入后删除，保证每次putIfAbsent都实际插入
+ * eviction: 写入新key + size() + 删除最早写入的key，对应淘汰路径
+ *
+ * 用法: CacheTableBenchmark [durationMillis] [threads...]
+ */
+public class CacheTableBenchmark {
+    /**
+     * 预置数据数
+     */
+    static final int ENTRIES = 100000;
+
+    interface Table {
+        LRUCache.Entry<Integer, Integer> get(Integer key);
+
+        LRUCache.Entry<Integer, Integer> putIfAbsent(Integer key, LRUCache.Entry<Integer, Integer> entry);
+
+        boolean remove(Integer key, LRUCache.Entry<Integer, Integer> entry);
+
+        int size();
+    }
+
+    interface Workload {
+        void run(Table table, Random random, int thread);
+    }
+
+    public static void main(String[] args) throws Exception {
+        long duration = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int[] threads = new int[]{1, 4};
+        if (args.length > 1) {
+            threads = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threads[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        final Integer[] keys = new Integer[ENTRIES * 4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+
+        Workload get = new Workload() {
+            @Override
+            public void run(Table table, Random random, int thread) {
+                table.get(keys[random.nextInt(ENTRIES)]);
+            }
+        };
+        Workload set = new Workload() {
+            @Override
+            public void run(Table table, Random random, int thread) {
+                // 每个线程独立的未预置key区间
+                int span = ENTRIES * 3 / 64;
+                Integer key = keys[ENTRIES + thread * span + random.nextInt(span)];
+                LRUCache.Entry<Integer, Integer> entry = new LRUCache.Entry<Integer, Integer>(key, key);
+                if (table.putIfAbsent(key, entry) == null) {
+                    table.size();
+                    table.remove(key, entry);
+                }
+            }
+        };
+        Workload eviction = new Workload() {
+            @Override
+            public void run(Table table, Random random, int thread) {
+                // 每个线程独立的key区间，写入新key并删除区间内最早的key
+                int base = ENTRIES + thread * (ENTRIES * 3 / 64);
+                int span = ENTRIES * 3 / 64;
+                int i = random.nextInt(span);
+                Integer key = keys[base + i];
+                LRUCache.Entry<Integer, Integer> entry = new LRUCache.Entry<Integer, Integer>(key, key);
+                if (table.putIfAbsent(key, entry) == null) {
+                    table.size();
+                }
+                Integer oldest = keys[base + (i + span / 2) % span];
+                LRUCache.Entry<Integer, Integer> e = table.get(oldest);
+                if (e != null) {
+                    table.remove(oldest, e);
+                }
+            }
+        };
+
+        LoggerUtils.error("%-10s %8s %16s %16s", "workload", "threads", "CHM ops/s", "CacheTable ops/s");
+        for (int t : threads) {
+            report("get", t, duration, get, keys);
+            report("set", t, duration, set, keys);
+            report("eviction", t, duration, eviction, keys);
+        }
+    }
+
+    static void report(String name, int threads, long duration, Workload workload, Integer[] keys)
+            throws InterruptedException {
+        // 预热
+        run(chm(keys), threads, duration / 4, workload);
+        run(table(keys), threads, duration / 4, workload);
+
+        long chm = run(chm(keys), threads, duration, workload);
+        long table = run(table(keys), threads, duration, workload);
+        LoggerUtils.error("%-10s %8d %16d %16d", name, threads, chm, table);
+    }
+
+    static long run(final Table table, int threads, long duration, final Workload workload)
+            throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong ops = new AtomicLong();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            final int thread = i;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(thread);
+                    long count = 0;
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    while (System.nanoTime() < deadline) {
+                        for (int j = 0; j < 64; j++) {
+                            workload.run(table, random, thread);
+                        }
+                        count += 64;
+                    }
+                    ops.addAndGet(count);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.get() * TimeUnit.SECONDS.toNanos(1) / (System.nanoTime() - begin);
+    }
+
+    static Table chm(Integer[] keys) {
+        final ConcurrentHashMap<Integer, LRUCache.Entry<Integer, Integer>> map =
+                new ConcurrentHashMap<Integer, LRUCache.Entry<Integer, Integer>>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            map.put(keys[i], new LRUCache.Entry<Integer, Integer>(keys[i], keys[i]));
+        }
+        return new Table() {
+            @Override
+            public LRUCache.Entry<Integer, Integer> get(Integer key) {
+                return map.get(key);
+            }
+
+            @Override
+            public LRUCache.Entry<Integer, Integer> putIfAbsent(Integer key, LRUCache.Entry<Integer, Integer> entry) {
+                return map.putIfAbsent(key, entry);
+            }
+
+            @Override
+            public boolean remove(Integer key, LRUCache.Entry<Integer, Integer> entry) {
+                return map.remove(key, entry);
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+        };
+    }
+
+    static Table table(Integer[] keys) {
+        final CacheTable<Integer, Integer> table = new CacheTable<Integer, Integer>(ENTRIES);
+        for (int i = 0; i < ENTRIES; i++) {
+            table.putIfAbsent(keys[i], new LRUCache.Entry<Integer, Integer>(keys[i], keys[i]));
+        }
+        return new Table() {
+            @Override
+            public LRUCache.Entry<Integer, Integer> get(Integer key) {
+                return table.get(key);
+            }
+
+            @Override
+            public LRUCache.Entry<Integer, Integer> putIfAbsent(Integer key, LRUCache.Entry<Integer, Integer> entry) {
+                return table.putIfAbsent(key, entry);
+            }
+
+            @Override
+            public boolean remove(Integer key, LRUCache.Entry<Integer, Integer> entry) {
+                return table.remove(key, entry);
+            }
+
+            @Override
+            public int size() {
+                return table.size();
+            }
+        };
+    }
+}
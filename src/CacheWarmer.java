@@ -0,0 +1,257 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * 缓存预热
+ * 按批并行加载热点key，整批加入缓存后统一触发一次LRU，不等待CountCache计数晋升
+ */
+public class CacheWarmer<K, V> {
+
+    private final LRUCache<K, V> cache;
+    /**
+     * 并发加载数
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    /**
+     * 每批key数
+     */
+    private int batchSize = 64;
+    /**
+     * 批量加载器，未设置时逐个调用ValueLoader
+     */
+    private BatchValueLoader<K, V> batchLoader;
+    /**
+     * 进度回调
+     */
+    private Progress progress;
+
+    public CacheWarmer(LRUCache<K, V> cache) {
+        this.cache = cache;
+    }
+
+    public CacheWarmer<K, V> parallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public CacheWarmer<K, V> batchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public CacheWarmer<K, V> batchLoader(BatchValueLoader<K, V> batchLoader) {
+        this.batchLoader = batchLoader;
+        return this;
+    }
+
+    public CacheWarmer<K, V> progress(Progress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    /**
+     * 从文件预热，每行一个key，空行忽略，解析失败的行计入失败数
+     * @param file
+     * @param parser 行 -> key
+     * @return
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public Result warmUp(Path file, Function<String, K> parser) throws IOException, InterruptedException {
+        BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        try {
+            Stream<String> lines = reader.lines();
+            return warmUp(lines.map(String::trim).filter(line -> !line.isEmpty()).map(line -> parse(parser, line)));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 解析一行，失败时返回null
+     * @param parser
+     * @param line
+     * @return
+     */
+    private K parse(Function<String, K> parser, String line) {
+        try {
+            return parser.apply(line);
+        } catch (RuntimeException e) {
+            LoggerUtils.error("预热key解析失败:%s %s", line, e);
+            return null;
+        }
+    }
+
+    public Result warmUp(Stream<K> keys) throws InterruptedException {
+        return warmUp(keys.iterator());
+    }
+
+    /**
+     * 预热，加载完成后返回
+     * null key及加载后不存在的key计入失败数；key源抛出异常时等待已提交的批次完成后抛出
+     * @param keys
+     * @return
+     * @throws InterruptedException
+     */
+    public Result warmUp(Iterator<K> keys) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final AtomicLong loaded = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        // 限制排队中的批次，key源较大时不全部读入内存
+        final Semaphore permits = new Semaphore(parallelism * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new WarmerThreadFactory());
+        try {
+            while (keys.hasNext()) {
+                final List<K> batch = new ArrayList<K>(batchSize);
+                while (keys.hasNext() && batch.size() < batchSize) {
+                    K key = keys.next();
+                    if (key == null) {
+                        failed.incrementAndGet();
+                    } else {
+                        batch.add(key);
+                    }
+                }
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                permits.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Map<K, V> values = loadBatch(batch);
+                            // 不存在的key不加入，计入失败数
+                            Map<K, V> found = new HashMap<K, V>(batch.size() * 2);
+                            int missing = 0;
+                            for (K key : batch) {
+                                V value = values == null ? null : values.get(key);
+                                if (value == null) {
+                                    missing++;
+                                } else {
+                                    found.put(key, value);
+                                }
+                            }
+                            loaded.addAndGet(cache.putAllIfAbsent(found));
+                            failed.addAndGet(missing);
+                        } catch (Throwable e) {
+                            failed.addAndGet(batch.size());
+                            LoggerUtils.error("预热加载失败:%s", e);
+                        } finally {
+                            permits.release();
+                        }
+                        report(loaded.get(), failed.get(), System.currentTimeMillis() - start);
+                    }
+                });
+            }
+        } finally {
+            // key源抛出异常时同样等待已提交的批次
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        Result result = new Result(loaded.get(), failed.get(), System.currentTimeMillis() - start);
+        LoggerUtils.info("预热完成:%s", result);
+        return result;
+    }
+
+    private Map<K, V> loadBatch(List<K> batch) {
+        if (batchLoader != null) {
+            return batchLoader.getAll(batch);
+        }
+        ValueLoader<K, V> loader = cache.valueLoader();
+        Map<K, V> values = new HashMap<K, V>(batch.size() * 2);
+        for (K key : batch) {
+            values.put(key, cache.load(key, loader));
+        }
+        return values;
+    }
+
+    private void report(long loaded, long failed, long elapsedMillis) {
+        if (progress != null) {
+            progress.onProgress(loaded, failed, elapsedMillis);
+        } else {
+            LoggerUtils.info("预热进度:%s 失败:%s 耗时:%sms", loaded, failed, elapsedMillis);
+        }
+    }
+
+    /**
+     * 进度回调，每批完成后在加载线程中调用
+     */
+    public interface Progress {
+        void onProgress(long loaded, long failed, long elapsedMillis);
+    }
+
+    /**
+     * 预热结果
+     */
+    static public class Result {
+        private final long loaded;
+        private final long failed;
+        private final long elapsedMillis;
+
+        public Result(long loaded, long failed, long elapsedMillis) {
+            this.loaded = loaded;
+            this.failed = failed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * 加入缓存的数据数，已存在的key不计入
+         * @return
+         */
+        public long getLoaded() {
+            return loaded;
+        }
+
+        /**
+         * 加载失败、解析失败及加载后不存在的key数
+         * @return
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "loaded=" + loaded + ", failed=" + failed + ", elapsed=" + elapsedMillis + "ms";
+        }
+    }
+
+    static class WarmerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "cache-warmer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+import java.util.Map;
+
+/**
+ * 缓存写入器，将缓存更新批量写回后端
+ */
+public interface CacheWriter<K, V> {
+
+    /**
+     * 批量写入，抛出异常时整批重试
+     * @param entries 同一key只保留最后一次更新
+     * @throws Exception
+     */
+    void write(Map<K, V> entries) throws Exception;
+}
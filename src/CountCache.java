@@ -15,6 +15,8 @@ public class CountCache<K, V> extends LRUCache<K, V> implements Count<K, V> {
 
     public CountCache(LRUCacheBuilder<K, V> builder) {
         super(builder, null, false);
+        // 计数窗口固定为全局超时时间，加入计数时值尚未加载，不能交给按值计算的Expiry
+        this.expiry = new FixedExpiry();
     }
 
     public void setCount(int count) {
@@ -35,12 +37,13 @@ public class CountCache<K, V> extends LRUCache<K, V> implements Count<K, V> {
 
         int incr() {
             // 热点数据期内
-            if (now() - time < expireMillis) {
+            long now = now();
+            if (now < deadline) {
                 int incr = atomicInteger.incrementAndGet();
                 LoggerUtils.debug("%s:计数器加1:%s", key, incr);
                 return incr;
             } else {
-                time = now();
+                deadline = deadline(now, expireMillis);
                 atomicInteger.getAndSet(1);
                 LoggerUtils.debug("%s:刷新计数器:1", key);
                 return atomicInteger.get();
@@ -52,53 +55,30 @@ public class CountCache<K, V> extends LRUCache<K, V> implements Count<K, V> {
     public V get(K key, Cache<K, V> cache) throws Exception {
         CountEntry<K, V> entry = (CountEntry<K, V>) _set(key, null);
 
-        V val = cache.valueLoader().get(key);
+        V val = load(key, cache.valueLoader());
         entry.value = val;
 
-
-        boolean offered = false;
         // 可升级为热点数据
-        if (entry.incr() >= count) {
+        int incr = entry.incr();
+        if (incr >= count) {
             LoggerUtils.debug("升级为热点数据 : %s", entry.key);
-            cache.set(key, val);
-            Entry v = localCache.remove(key);
-            if (v != null) {
-                // 删除引用
-                offered = offerEntry(v);
-
-                // 数据有变更
-                if (offered) {
-                    purge(v.node);
-                }
+            CacheEvents.Promotion event = new CacheEvents.Promotion();
+            if (event.isEnabled()) {
+                event.key = String.valueOf(key);
+                event.count = incr;
+                event.commit();
             }
-        }
-
-        return entry.value;
-    }
-
-    @Override
-    protected boolean offerEntry(Entry entry) {
-        // LRU最近使用 != 当前元素
-        if (entry != tail.entry) {
-            LoggerUtils.debug("删除LRU队列中Node的Entry引用:%s", entry.key);
-            Node c = entry.node;
-            // 创建新Node
-            Node tmp = new Node(entry);
-            for (;;) {
-                // Entry的Node调整
-                if (compareAndSetNode(entry, c, tmp)) {
-                    // 原Node引用删除
-                    if (c != null) {
-                        c.entry = null;
-                    }
-                    break;
-                }
+            if (cache instanceof LRUCache) {
+                // 加载的值来自后端，不加入写回队列；已被set时保留新值
+                ((LRUCache<K, V>) cache)._set(key, val);
+            } else {
+                cache.set(key, val);
             }
-        } else {
-            return false;
+            // 从计数LRU中摘除
+            removeEntry(key, null);
         }
 
-        return true;
+        return entry.value;
     }
 
     @Override
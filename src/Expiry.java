@@ -0,0 +1,34 @@
+/**
+ * 过期策略，按Entry计算存活时间(毫秒)
+ */
+public interface Expiry<K, V> {
+
+    /**
+     * 新增数据后的存活时间
+     * @param key
+     * @param value
+     * @param currentTime 当前时间(毫秒)
+     * @return
+     */
+    long expireAfterCreate(K key, V value, long currentTime);
+
+    /**
+     * 更新数据后的存活时间
+     * @param key
+     * @param value
+     * @param currentTime 当前时间(毫秒)
+     * @param currentDuration 剩余存活时间
+     * @return
+     */
+    long expireAfterUpdate(K key, V value, long currentTime, long currentDuration);
+
+    /**
+     * 读取数据后的存活时间，返回currentDuration表示不变
+     * @param key
+     * @param value
+     * @param currentTime 当前时间(毫秒)
+     * @param currentDuration 剩余存活时间
+     * @return
+     */
+    long expireAfterRead(K key, V value, long currentTime, long currentDuration);
+}
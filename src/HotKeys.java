@@ -0,0 +1,299 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 热点key统计(Space-Saving)
+ * 固定数量的计数器，计数器满时替换计数最小的key，新key继承其计数作为误差
+ * 计数器按计数分桶(Stream-Summary)，桶按计数升序链接，计数加1及替换最小计数器均为O(1)
+ * 按1/sampleRate采样，统计锁被占用时丢弃本次采样并计入dropped，不阻塞get
+ * 采样数的误差范围为[count - error, count + dropped]，乘以sampleRate为访问数的估计值
+ */
+public class HotKeys<K> {
+    /**
+     * 计数器数量
+     */
+    private final int capacity;
+    /**
+     * 采样率，每sampleRate次访问记录一次
+     */
+    private final int sampleRate;
+
+    private final Map<K, Counter<K>> counters;
+
+    /**
+     * 计数最小/最大的桶，lock保护
+     */
+    private Bucket<K> minBucket;
+    private Bucket<K> maxBucket;
+
+    /**
+     * 锁竞争丢弃的采样数
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public HotKeys(int capacity, int sampleRate) {
+        if (capacity <= 0 || sampleRate <= 0) {
+            throw new IllegalArgumentException("capacity and sampleRate must be positive");
+        }
+        this.capacity = capacity;
+        this.sampleRate = sampleRate;
+        this.counters = new HashMap<K, Counter<K>>(capacity * 2);
+    }
+
+    /**
+     * 记录一次访问
+     * @param key
+     */
+    public void record(K key) {
+        if (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return;
+        }
+        // 竞争时丢弃，计入误差
+        if (!lock.tryLock()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        try {
+            Counter<K> counter = counters.get(key);
+            if (counter != null) {
+                increment(counter);
+            } else if (counters.size() < capacity) {
+                counter = new Counter<K>(key);
+                counters.put(key, counter);
+                addFirst(counter);
+            } else {
+                // 替换计数最小的key，继承其计数作为误差
+                counter = minBucket.head;
+                counters.remove(counter.key);
+                counter.key = key;
+                counter.error = minBucket.count;
+                counters.put(key, counter);
+                increment(counter);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 访问数最多的k个key，按估计访问数倒序
+     * @param k k <= 0时返回空列表
+     * @return
+     */
+    public List<HotKey<K>> topKeys(int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        long d = dropped.get() * sampleRate;
+        List<HotKey<K>> top = new ArrayList<HotKey<K>>(Math.min(k, capacity));
+        lock.lock();
+        try {
+            // 从计数最大的桶开始
+            for (Bucket<K> b = maxBucket; b != null && top.size() < k; b = b.prev) {
+                for (Counter<K> c = b.head; c != null && top.size() < k; c = c.next) {
+                    top.add(new HotKey<K>(c.key, b.count * sampleRate, c.error * sampleRate, d));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return top;
+    }
+
+    /**
+     * 锁竞争丢弃的采样数
+     * @return
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            counters.clear();
+            minBucket = maxBucket = null;
+            dropped.set(0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 新计数器加入计数为1的桶，持有lock时调用
+     * @param counter
+     */
+    private void addFirst(Counter<K> counter) {
+        Bucket<K> b = minBucket;
+        if (b == null || b.count != 1) {
+            b = new Bucket<K>(1);
+            linkAfter(null, b);
+        }
+        b.add(counter);
+    }
+
+    /**
+     * 计数加1，移至下一个桶，持有lock时调用
+     * @param counter
+     */
+    private void increment(Counter<K> counter) {
+        Bucket<K> b = counter.bucket;
+        Bucket<K> next = b.next;
+        if (next == null || next.count != b.count + 1) {
+            next = new Bucket<K>(b.count + 1);
+            linkAfter(b, next);
+        }
+        b.remove(counter);
+        next.add(counter);
+        if (b.head == null) {
+            unlink(b);
+        }
+    }
+
+    /**
+     * 插入桶，prev为null时插入最前，持有lock时调用
+     * @param prev
+     * @param b
+     */
+    private void linkAfter(Bucket<K> prev, Bucket<K> b) {
+        Bucket<K> next = prev == null ? minBucket : prev.next;
+        b.prev = prev;
+        b.next = next;
+        if (prev == null) {
+            minBucket = b;
+        } else {
+            prev.next = b;
+        }
+        if (next == null) {
+            maxBucket = b;
+        } else {
+            next.prev = b;
+        }
+    }
+
+    /**
+     * 删除空桶，持有lock时调用
+     * @param b
+     */
+    private void unlink(Bucket<K> b) {
+        if (b.prev == null) {
+            minBucket = b.next;
+        } else {
+            b.prev.next = b.next;
+        }
+        if (b.next == null) {
+            maxBucket = b.prev;
+        } else {
+            b.next.prev = b.prev;
+        }
+    }
+
+    /**
+     * 计数相同的计数器
+     * @param <K>
+     */
+    static class Bucket<K> {
+        final long count;
+        Bucket<K> prev;
+        Bucket<K> next;
+        Counter<K> head;
+
+        Bucket(long count) {
+            this.count = count;
+        }
+
+        void add(Counter<K> c) {
+            c.bucket = this;
+            c.prev = null;
+            c.next = head;
+            if (head != null) {
+                head.prev = c;
+            }
+            head = c;
+        }
+
+        void remove(Counter<K> c) {
+            if (c.prev == null) {
+                head = c.next;
+            } else {
+                c.prev.next = c.next;
+            }
+            if (c.next != null) {
+                c.next.prev = c.prev;
+            }
+            c.prev = c.next = null;
+            c.bucket = null;
+        }
+    }
+
+    static class Counter<K> {
+        K key;
+        long error;
+        Bucket<K> bucket;
+        Counter<K> prev;
+        Counter<K> next;
+
+        Counter(K key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 热点key
+     * @param <K>
+     */
+    static public class HotKey<K> {
+        private final K key;
+        private final long count;
+        private final long error;
+        private final long dropped;
+
+        public HotKey(K key, long count, long error, long dropped) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.dropped = dropped;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * 估计访问数
+         * @return
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 最大高估量，真实访问数 >= count - error
+         * @return
+         */
+        public long getError() {
+            return error;
+        }
+
+        /**
+         * 锁竞争丢弃的采样(全局)，真实访问数 <= count + dropped
+         * @return
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count + "(error=" + error + ", dropped=" + dropped + ")";
+        }
+    }
+}
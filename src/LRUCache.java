@@ -1,13 +1,16 @@
-import sun.misc.Unsafe;
-
-import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 
 /**
  * @author quyan
@@ -18,10 +21,19 @@ import java.util.concurrent.locks.ReentrantLock;
  * @copyright copyright(c) 2015~2016
  */
 public class LRUCache<K, V> implements Cache<K, V> {
+    /**
+     * 访问缓冲最大容量
+     */
+    static final int MAXIMUM_BUFFER_SIZE = 1 << 10;
+    /**
+     * 访问缓冲最小容量
+     */
+    static final int MINIMUM_BUFFER_SIZE = 16;
+
     /**
      * K-V 缓存
      */
-    protected Map<K, Entry<K, V>> localCache;
+    protected CacheTable<K, V> localCache;
 
     /**
      * 加热器
@@ -29,14 +41,17 @@ public class LRUCache<K, V> implements Cache<K, V> {
     private Count<K, V> countLruCache;
 
     /**
-     * 空Node队列
-     * Entry被访问后，新增Node放置LRU尾部，原Node删除Entry引用，加入空Node队列
+     * 访问缓冲
+     * Entry被访问后记录至缓冲，达到高水位后批量移动至LRU尾部，不再为每次访问创建Node
      */
-    private Queue<Node> queue = new ConcurrentLinkedQueue<Node>();
+    private volatile AccessBuffer buffer;
+
     /**
-     * 空Node队列计数器
+     * 写缓冲
+     * 新增/更新/删除的Entry记录至缓冲，由持有lruLock的线程调整LRU链表，写入线程不等待lruLock
+     * 不丢弃记录，否则链表与localCache不一致
      */
-    private AtomicInteger queueCount = new AtomicInteger(0);
+    private final Queue<Entry<K, V>> writeBuffer = new ConcurrentLinkedQueue<Entry<K, V>>();
 
     /**
      * 统计器
@@ -46,39 +61,74 @@ public class LRUCache<K, V> implements Cache<K, V> {
     /**
      * 最大容量
      */
-    private int capacity = 32; // default capacity
+    private volatile int capacity = 32; // default capacity
     /**
      * 高水位容量
      */
-    private int hwmCapacity = 0; // high water mark
+    private volatile int hwmCapacity = 0; // high water mark
     /**
      * 超时时间
      */
-    protected long expireMillis = 500;
+    protected volatile long expireMillis = 500;
+    /**
+     * 过期策略
+     */
+    protected Expiry<K, V> expiry;
+    /**
+     * 访问缓冲容量因子
+     */
+    private volatile int cleanUpFactor = 3;
+    /**
+     * 访问缓冲容量
+     */
+    private volatile int cleanUpCapacity = capacity * cleanUpFactor;
+    /**
+     * 访问缓冲高水位容量
+     */
+    private volatile int hwmCleanUpCapacity = 0; // high water mark
+
+    /**
+     * 异步写回，未配置CacheWriter时为null
+     */
+    private WriteBehindQueue<K, V> writeBehind;
+
+    /**
+     * 值压缩，未开启时为null
+     */
+    private ValueCompressor compressor;
+
     /**
-     * 空Node队列容量因子
+     * 热点key统计，未开启时为null
      */
-    private int cleanUpFactor = 3;
+    private HotKeys<K> hotKeys;
+
     /**
-     * 空Node队列容量
+     * 内存压力监听，自适应容量时使用
      */
-    private int cleanUpCapacity = capacity * cleanUpFactor;
+    private MemoryPressureMonitor memoryMonitor;
+
     /**
-     * 空Node队列高水位容量
+     * 预取，未开启时为null
      */
-    private int hwmCleanUpCapacity = 0; // high water mark
+    private Prefetcher<K, V> prefetcher;
 
-    // LRU
-    protected volatile Node head; // oldest
-    protected volatile Node tail; // youngest
-    // LRU清理状态位
-    private volatile int lruFlag = 0; // lru list flag
-    // cleanup清理状态位
-    private volatile int cleanUpFlag = 0; // cleanup list flag
+    // LRU，lruLock保护
+    protected Entry<K, V> head; // oldest
+    protected Entry<K, V> tail; // youngest
 
+    /**
+     * LRU链表锁，localCache按分段加锁，获取顺序为lruLock -> 分段锁
+     * 持有分段锁时只能tryLock，不能等待lruLock
+     */
+    private final ReentrantLock lruLock = new ReentrantLock();
 
     private ValueLoader<K, V> loader;
 
+    /**
+     * 注册名，未配置时不注册MBean
+     */
+    private final String name;
+
     public LRUCache(LRUCacheBuilder builder, ValueLoader<K, V> loader) {
         this(builder, loader, true);
     }
@@ -87,17 +137,56 @@ public class LRUCache<K, V> implements Cache<K, V> {
         this.capacity = builder.getMaximumSize();
         this.hwmCapacity = (int) (capacity * 0.75);
         this.expireMillis = builder.getExpireMillis();
+        // 未配置过期策略时使用全局超时时间
+        this.expiry = builder.getExpiry() != null ? (Expiry<K, V>) builder.getExpiry() : new FixedExpiry();
 
         if (needLoader && loader == null) {
             throw new IllegalArgumentException("need loader");
         }
         this.loader = loader;
-        this.cleanUpFactor = Math.min(2, Math.max(10, builder.getCleanUpFactor()));
-        this.cleanUpCapacity = capacity * cleanUpFactor;
-        this.hwmCleanUpCapacity = (int) (cleanUpCapacity * 0.75);
-        localCache = new ConcurrentHashMap<K, Entry<K, V>>(capacity);
+        // 未配置时使用默认值
+        if (builder.getCleanUpFactor() > 0) {
+            this.cleanUpFactor = cleanUpFactor(builder.getCleanUpFactor());
+        }
+        this.buffer = newBuffer();
+        localCache = new CacheTable<K, V>(capacity);
 
         this.head = this.tail  = null;
+
+        if (builder.getWriter() != null) {
+            this.writeBehind = new WriteBehindQueue<K, V>((CacheWriter<K, V>) builder.getWriter(),
+                    builder.getWriteBatchSize(), builder.getWriteFlushMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        if (builder.getCompressThreshold() > 0) {
+            this.compressor = new ValueCompressor(builder.getCompressThreshold(), builder.getCompressHotSetSize(), stat);
+        }
+
+        if (builder.getHotKeysCapacity() > 0) {
+            this.hotKeys = new HotKeys<K>(builder.getHotKeysCapacity(), builder.getHotKeysSampleRate());
+        }
+
+        // 自适应容量
+        if (builder.isAdaptive()) {
+            this.memoryMonitor = new MemoryPressureMonitor(this, builder.getMinimumSize(), capacity);
+            this.memoryMonitor.start();
+        }
+
+        if (builder.getPrefetchPerSecond() > 0) {
+            this.prefetcher = new Prefetcher<K, V>(this, builder.getPrefetchPerSecond(), builder.getPrefetchThreads(),
+                    (BatchValueLoader<K, V>) builder.getPrefetchLoader());
+        }
+
+        // 配置name时注册MBean，失败(如重名)时释放已启动的资源
+        this.name = builder.getName();
+        if (name != null) {
+            try {
+                CacheRegistry.register(name, this);
+            } catch (RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
     }
 
     public void setCountLruCache(Count<K, V> countLruCache) {
@@ -107,64 +196,344 @@ public class LRUCache<K, V> implements Cache<K, V> {
     @Override
     public V get(K key) throws Exception {
         stat.incrGet();
+        if (hotKeys != null) {
+            hotKeys.record(key);
+        }
         Entry<K, V> entry = localCache.get(key);
 
         // 热点数据中不存在的情况
         if (entry == null) {
             LoggerUtils.debug("热点数据不存在:%s", key);
+            if (prefetcher != null) {
+                prefetcher.onMiss(key);
+            }
             return getFromLoader(key, loader);
         }
 
-        Node old = entry.node;
-
-        // 更新LRU
-        boolean offered = offerEntry(entry);
-
         // 数据已经失效的情况
-        if (isExpire(entry, now())) {
+        long now = now();
+        if (isExpire(entry, now)) {
             LoggerUtils.info("热点数据已过期:%s", entry.key);
             // 刪除元素
-            localCache.remove(entry.key);
+            removeEntry(entry.key, entry);
+            if (prefetcher != null) {
+                prefetcher.onMiss(key);
+            }
             return getFromLoader(key, loader);
         }
 
-        // LRU数据有变更
-        if (offered) {
-            purge(old);
+        // 读取后刷新存活时间
+        long remaining = entry.deadline - now;
+        V value = valueOf(entry);
+        long duration = expiry.expireAfterRead(entry.key, value, now, remaining);
+        if (duration != remaining) {
+            entry.deadline = deadline(now, duration);
         }
 
+        // 更新LRU
+        afterRead(entry);
+
         // 命中率统计
         stat.incrHits();
+        if (prefetcher != null) {
+            prefetcher.onHit(entry);
+        }
 
-        return entry.value;
+        return value;
     }
 
 
     @Override
     public void set(K key, V value) {
         LoggerUtils.info("追加热点数据:%s", key);
-        _set(key, value);
+        checkOpen();
+        // 锁外压缩
+        V stored = encode(value);
+        ReentrantLock lock = localCache.lockFor(key);
+        lock(lock, "segmentLock");
+        try {
+            long now = now();
+            put(key, liveEntry(key, now), value, stored, now);
+            writeBehind(key, value);
+        } finally {
+            lock.unlock();
+            drain();
+        }
     }
 
-    protected Entry<K, V> _set(K key, V value) {
-        Entry entry = newEntry(value, key);
-        // 利用putIfAbsent特性
-        Entry old = localCache.putIfAbsent(key, entry);
-        // 第一次追加此数据
-        if (old == null) {
-            stat.incrSet();
-            LoggerUtils.debug("第一次追加热点数据:%s", key);
-            // LRU追加
-            appendTail(entry.node);
-            // 高水位
-            if (highWaterMark()) {
-                // lru清理触发
-                this.lru();
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+        checkOpen();
+        ReentrantLock lock = localCache.lockFor(key);
+        lock(lock, "segmentLock");
+        try {
+            long now = now();
+            Entry<K, V> entry = liveEntry(key, now);
+            V value = remappingFunction.apply(key, entry == null ? null : valueOf(entry));
+            // 新值依赖当前值，只能在锁内压缩，在重新查询前完成
+            V stored = value == null ? null : encode(value);
+            // 函数内的读取可能触发淘汰，重新查询，避免更新已移出localCache的Entry
+            return putOrRemove(key, localCache.get(key), value, stored, now);
+        } finally {
+            lock.unlock();
+            drain();
+        }
+    }
+
+    @Override
+    public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+        checkOpen();
+        // 锁外压缩，不存在时直接使用
+        V stored = value == null ? null : encode(value);
+        ReentrantLock lock = localCache.lockFor(key);
+        lock(lock, "segmentLock");
+        try {
+            long now = now();
+            Entry<K, V> entry = liveEntry(key, now);
+            if (entry == null) {
+                return putOrRemove(key, null, value, stored, now);
             }
-            return entry;
+            V merged = remappingFunction.apply(valueOf(entry), value);
+            if (merged != value) {
+                stored = merged == null ? null : encode(merged);
+            }
+            // 同compute，重新查询
+            return putOrRemove(key, localCache.get(key), merged, stored, now);
+        } finally {
+            lock.unlock();
+            drain();
         }
+    }
 
-        return old;
+    @Override
+    public V replace(K key, V value) {
+        checkOpen();
+        // 锁外压缩
+        V stored = encode(value);
+        ReentrantLock lock = localCache.lockFor(key);
+        lock(lock, "segmentLock");
+        try {
+            long now = now();
+            Entry<K, V> entry = liveEntry(key, now);
+            if (entry == null) {
+                return null;
+            }
+            V old = valueOf(entry);
+            put(key, entry, value, stored, now);
+            writeBehind(key, value);
+            return old;
+        } finally {
+            lock.unlock();
+            drain();
+        }
+    }
+
+    /**
+     * 批量加入不存在的数据，整批加入后统一调整LRU
+     * @param values
+     * @return 加入的数据数
+     */
+    public int putAllIfAbsent(Map<? extends K, ? extends V> values) {
+        // 锁外压缩
+        List<Map.Entry<? extends K, ? extends V>> batch = new ArrayList<Map.Entry<? extends K, ? extends V>>(values.entrySet());
+        List<V> stored = new ArrayList<V>(batch.size());
+        for (Map.Entry<? extends K, ? extends V> e : batch) {
+            stored.add(encode(e.getValue()));
+        }
+        int count = 0;
+        long now = now();
+        for (int i = 0; i < batch.size(); i++) {
+            Map.Entry<? extends K, ? extends V> e = batch.get(i);
+            ReentrantLock lock = localCache.lockFor(e.getKey());
+            lock(lock, "segmentLock");
+            try {
+                if (liveEntry(e.getKey(), now) == null) {
+                    put(e.getKey(), null, e.getValue(), stored.get(i), now);
+                    count++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        // 整批加入后调整LRU
+        drain();
+        return count;
+    }
+
+    @Override
+    public void invalidate(K key) {
+        removeEntry(key, null);
+    }
+
+    @Override
+    public void invalidateAll() {
+        lock(lruLock, "lruLock");
+        try {
+            for (Entry<K, V> e = head; e != null; ) {
+                Entry<K, V> next = e.next;
+                e.prev = null;
+                e.next = null;
+                e.state = Entry.RETIRED;
+                e = next;
+            }
+            head = tail = null;
+            localCache.clear();
+            // 丢弃访问记录
+            while (buffer.poll() != null) {
+            }
+            // 已从localCache清除的Entry在此删除，并发加入的Entry正常追加
+            drainWrites();
+            if (prefetcher != null) {
+                prefetcher.clear();
+            }
+        } finally {
+            lruLock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * 未过期的Entry，已过期时删除，持有key的分段锁时调用
+     * @param key
+     * @param now
+     * @return
+     */
+    private Entry<K, V> liveEntry(K key, long now) {
+        Entry<K, V> entry = localCache.get(key);
+        if (entry != null && isExpire(entry, now)) {
+            LoggerUtils.info("热点数据已过期:%s", key);
+            localCache.remove(key, entry);
+            writeBuffer.offer(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * value为null时删除，否则加入或更新，持有key的分段锁时调用
+     * @param key
+     * @param entry 当前Entry，不存在时为null
+     * @param value
+     * @param stored 存放的值，开启压缩时为压缩后的值
+     * @param now
+     * @return
+     */
+    private V putOrRemove(K key, Entry<K, V> entry, V value, V stored, long now) {
+        if (value == null) {
+            if (entry != null) {
+                localCache.remove(key, entry);
+                writeBuffer.offer(entry);
+            }
+            return null;
+        }
+        put(key, entry, value, stored, now);
+        writeBehind(key, value);
+        return value;
+    }
+
+    /**
+     * 写回队列已shutdown时抛出异常，修改缓存前调用，避免修改后写回失败
+     */
+    private void checkOpen() {
+        if (writeBehind != null) {
+            writeBehind.checkOpen();
+        }
+    }
+
+    /**
+     * 更新加入写回队列，持有key的分段锁时调用保证同一key的写回顺序
+     * @param key
+     * @param value
+     */
+    private void writeBehind(K key, V value) {
+        if (writeBehind != null) {
+            writeBehind.enqueue(key, value);
+        }
+    }
+
+    /**
+     * 加入或原地更新，记录至写缓冲，持有key的分段锁时调用
+     * 释放分段锁后需调用drain调整LRU
+     * @param key
+     * @param entry 当前Entry，不存在时为null
+     * @param value
+     * @param stored 存放的值，开启压缩时为压缩后的值
+     * @param now
+     * @return 更新或新增的Entry
+     */
+    private Entry<K, V> put(K key, Entry<K, V> entry, V value, V stored, long now) {
+        stat.incrSet();
+        if (entry != null) {
+            entry.deadline = deadline(now, expiry.expireAfterUpdate(key, value, now, entry.deadline - now));
+            entry.value = stored;
+        } else {
+            entry = newEntry(stored, key);
+            entry.deadline = deadline(now, expiry.expireAfterCreate(key, value, now));
+            localCache.putIfAbsent(key, entry);
+        }
+        writeBuffer.offer(entry);
+        return entry;
+    }
+
+    /**
+     * 加入预取的值，已存在时不覆盖，不写回
+     * @param key
+     * @param value
+     * @return 是否加入
+     */
+    boolean putPrefetched(K key, V value) {
+        if (value == null) {
+            return false;
+        }
+        V stored = encode(value);
+        ReentrantLock lock = localCache.lockFor(key);
+        lock(lock, "segmentLock");
+        try {
+            long now = now();
+            if (liveEntry(key, now) != null) {
+                return false;
+            }
+            // 淘汰需先获取分段锁，保证added先于discard
+            prefetcher.added(put(key, null, value, stored, now));
+            return true;
+        } finally {
+            lock.unlock();
+            drain();
+        }
+    }
+
+    protected Entry<K, V> _set(K key, V value) {
+        // 已存在，无锁返回
+        Entry<K, V> old = localCache.get(key);
+        if (old != null) {
+            return old;
+        }
+        return _set(key, value, encode(value));
+    }
+
+    /**
+     * 不存在时加入
+     * @param key
+     * @param value
+     * @param stored 存放的值，开启压缩时为压缩后的值
+     * @return 加入的Entry，已存在时返回原Entry
+     */
+    protected Entry<K, V> _set(K key, V value, V stored) {
+        Entry entry = newEntry(stored, key);
+        long now = now();
+        entry.deadline = deadline(now, expiry.expireAfterCreate(key, value, now));
+        // 利用putIfAbsent特性
+        Entry<K, V> old = localCache.putIfAbsent(key, entry);
+        if (old != null) {
+            return old;
+        }
+        // 第一次追加此数据
+        stat.incrSet();
+        LoggerUtils.debug("第一次追加热点数据:%s", key);
+        // LRU追加
+        writeBuffer.offer(entry);
+        drain();
+        return entry;
     }
 
     /**
@@ -179,214 +548,313 @@ public class LRUCache<K, V> implements Cache<K, V> {
             return countLruCache.get(key, this);
         } else {
             // 非计数器方式，直接晋升热点数据
-            return _set(key, loader.get(key)).value;
+            V value = load(key, loader);
+            V stored = encode(value);
+            Entry<K, V> entry = _set(key, value, stored);
+            // 加入成功时直接返回加载的值，不再解压
+            return entry.value == stored ? value : valueOf(entry);
         }
     }
 
     /**
-     * 新增Node，将Entry的Node引用指向新Node, 并添加至LRU尾部，将原Node的Entry引用删除
-     * @param entry
+     * 调用Loader加载数据
+     * @param key
+     * @param loader
      * @return
      */
-    protected boolean offerEntry(Entry entry) {
-        // LRU最近使用 != 当前元素
-        if (entry != tail.entry) {
-            LoggerUtils.debug("删除LRU队列中Node的Entry引用:%s", entry.key);
-            Node c = entry.node;
-            // 创建新Node
-            Node tmp = new Node(entry);
-            for (;;) {
-                // Entry的Node引用调整
-                if (compareAndSetNode(entry, c, tmp)) {
-                    // 原Node的Entry引用删除
-                    if (c != null) {
-                        c.entry = null;
-                    }
-
-                    if (isExpire(entry, now())) {
-                        LoggerUtils.debug("追加数据已失效:%s", entry.key);
-                    } else {
-                        // 添加至LRU尾部
-                        appendTail(tmp);
-                    }
-                    break;
-                }
+    protected V load(K key, ValueLoader<K, V> loader) {
+        CacheEvents.LoaderCall event = new CacheEvents.LoaderCall();
+        if (!event.isEnabled()) {
+            return loader.get(key);
+        }
+        event.begin();
+        try {
+            return loader.get(key);
+        } finally {
+            event.end();
+            // 未超过阈值时不拼接key
+            if (event.shouldCommit()) {
+                event.key = String.valueOf(key);
+                event.loader = loader.getClass();
+                event.commit();
             }
-        } else {
-            return false;
         }
-
-        return true;
     }
 
     /**
-     * 清理空Node逻辑
-     * @param node
+     * 记录访问，访问缓冲过高水位时批量调整LRU
+     * 缓冲已满或锁被占用时丢弃本次访问记录，LRU顺序为近似值
+     * @param entry
      */
-    protected void purge(Node node) {
-        // 追加至cleanup队列
-        queue.offer(node);
-        // cleanup队列过高水位
-        if (queueCount.incrementAndGet() > hwmCleanUpCapacity) {
-            boolean lockFlag = false;
+    protected void afterRead(Entry<K, V> entry) {
+        AccessBuffer b = buffer;
+        int depth = b.offer(entry);
+        // 访问缓冲过高水位
+        if (depth > hwmCleanUpCapacity && lruLock.tryLock()) {
             try {
-                // cleanup队列过最大容量
-                if (queueCount.get() > cleanUpCapacity) {
-                    // 所有线程竞争lock
-                    purgeLock.lock();
-                    lockFlag = true;
+                CacheEvents.CleanUpHighWaterMark hwmEvent = new CacheEvents.CleanUpHighWaterMark();
+                if (hwmEvent.isEnabled()) {
+                    hwmEvent.queueDepth = depth;
+                    hwmEvent.highWaterMark = hwmCleanUpCapacity;
+                    // 访问缓冲已满，访问记录被丢弃
+                    hwmEvent.forced = depth >= cleanUpCapacity;
+                    hwmEvent.commit();
                 }
+                maintenance();
+            } finally {
+                lruLock.unlock();
+            }
+            drain();
+        }
+    }
 
-                boolean cas = lockFlag;
-                do {
-                    // 触发cleanup队列清除
-                    if (compareAndSetCleanUpFlagOffset(0, 1)) {
-                        // 清理cleanup队列的同时，lru队列清理标志位设置
-                        for(;;) {
-                            if (compareAndSetLRUFlagOffset(0, 1)) {
-                                // 空Node处理
-                                clean();
-                                // lru逻辑
-                                _lru();
-                                // 跳出
-                                break;
-                            }
-                        }
-                        // 处理
-                        cas = false;
-                    }
-                } while (cas);
+    /**
+     * 处理写缓冲，缓存过高水位时同时处理访问缓冲并淘汰
+     * lruLock被占用时不等待，由持有锁的线程释放后处理；
+     * 超出容量时等待lruLock并淘汰，避免持有锁的线程被挂起时size持续增长
+     * (持有分段锁时不等待，淘汰线程可能在等待该分段锁)
+     */
+    private void drain() {
+        if (full() && !localCache.isLockedByCurrentThread()) {
+            lock(lruLock, "lruLock");
+            try {
+                maintenance();
             } finally {
-                if (lockFlag) {
-                    purgeLock.unlock();
+                lruLock.unlock();
+            }
+        }
+        while (!writeBuffer.isEmpty() && lruLock.tryLock()) {
+            try {
+                if (highWaterMark()) {
+                    maintenance();
+                } else {
+                    drainWrites();
                 }
+            } finally {
+                lruLock.unlock();
             }
         }
     }
 
     /**
-     * 空Node队列中的元素从LRU链表中清理
+     * 写缓冲中的Entry加入、移至LRU尾部或删除，持有lruLock时调用
+     * 已不在localCache中的Entry视为已删除，同一Entry可重复记录
      */
-    private void clean() {
-        LoggerUtils.info("触发cleanup队列清除:%s", queueCount.get());
+    private void drainWrites() {
         for (;;) {
-            Node first = queue.poll();
-
-            if (first == null) {
-                LoggerUtils.info("cleanup队列清除完成");
-                queueCount.getAndSet(0);
-                cleanUpFlag = 0;
-                break;
+            Entry<K, V> entry = writeBuffer.poll();
+            if (entry == null) {
+                return;
             }
-
-            // 空节点
-            if (first.isolated()) {
-                continue;
+            if (localCache.get(entry.key) != entry) {
+                retire(entry);
+            } else if (entry.state == Entry.NEW) {
+                appendTail(entry);
+            } else {
+                moveToTail(entry);
             }
+        }
+    }
 
-            Node prev = first.prev;
-            Node next = first.next;
-            // 不处理空Node在head的情况
-            if (first != head) {
-                // 指针修改
-                if (prev != null) {
-                    prev.next = first.next;
-                }
-                if (next != null) {
-                    next.prev = first.prev;
-                }
-                first.prev = null;
-                first.next = null;
-                first.entry = null;
+    /**
+     * 写缓冲处理 + 访问缓冲处理 + LRU淘汰，持有lruLock时调用
+     * 淘汰前必须先处理访问缓冲，否则缓冲中刚被访问的Entry会按最久未使用被淘汰
+     */
+    private void maintenance() {
+        CacheEvents.Maintenance event = new CacheEvents.Maintenance();
+        event.begin();
+        // 写入记录处理
+        drainWrites();
+        // 访问记录处理
+        event.cleaned = clean();
+        // lru逻辑
+        event.evicted = _lru();
+        // 缓存已满时几乎每次写入都会调用，无清除及淘汰时不提交
+        if ((event.cleaned > 0 || event.evicted > 0) && event.shouldCommit()) {
+            event.size = localCache.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * 访问缓冲中的Entry移动至LRU尾部，持有lruLock时调用
+     * @return 处理的访问记录数
+     */
+    private int clean() {
+        LoggerUtils.info("触发访问缓冲清除:%s", buffer.size());
+        AccessBuffer b = buffer;
+        int cleaned = 0;
+        for (;;) {
+            Entry<K, V> entry = b.poll();
+            if (entry == null) {
+                LoggerUtils.info("访问缓冲清除完成");
+                return cleaned;
             }
+            moveToTail(entry);
             stat.incrCleanup();
+            cleaned++;
+        }
+    }
 
+    /**
+     * 追加Entry至LRU尾部，持有lruLock时调用
+     * @param entry
+     */
+    protected void appendTail(Entry<K, V> entry) {
+        // 追加前已被删除
+        if (entry.state != Entry.NEW) {
+            return;
+        }
+        Entry<K, V> t = tail;
+        entry.prev = t;
+        entry.next = null;
+        if (t == null) {
+            // 第一个Entry
+            head = entry;
+        } else {
+            t.next = entry;
         }
+        tail = entry;
+        entry.state = Entry.LINKED;
     }
 
-    /**i
-     * 追加Node至LRU尾部
-     * @param node
+    /**
+     * 从LRU链表中摘除，持有lruLock时调用
+     * @param entry
      */
-    protected void appendTail(Node node) {
-        for (;;) {
-            Node t = tail;
-            if (t == null) {
-                // 第一个Node
-                if (compareAndSetHead(null, node)) {
-                    tail = head;
-                }
-            } else {
-                // 追加Node至LRU尾部
-                node.prev = t;
-                if (compareAndSetTail(t, node)) {
-                    t.next = node;
-                    break;
-                }
-            }
+    private void unlink(Entry<K, V> entry) {
+        Entry<K, V> prev = entry.prev;
+        Entry<K, V> next = entry.next;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.next = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.prev = prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    /**
+     * 移动至LRU尾部，持有lruLock时调用
+     * @param entry
+     */
+    private void moveToTail(Entry<K, V> entry) {
+        // 已淘汰 || 最近使用 == 当前元素
+        if (entry.state != Entry.LINKED || entry == tail) {
+            return;
+        }
+        unlink(entry);
+        entry.state = Entry.NEW;
+        appendTail(entry);
+    }
+
+    /**
+     * 从localCache删除，并从LRU链表摘除
+     * @param key
+     * @param expect 当前Entry为expect时删除，null时不校验
+     * @return 被删除的Entry
+     */
+    protected Entry<K, V> removeEntry(K key, Entry<K, V> expect) {
+        Entry<K, V> entry;
+        if (expect == null) {
+            entry = localCache.remove(key);
+        } else {
+            entry = localCache.remove(key, expect) ? expect : null;
+        }
+        if (entry == null) {
+            return null;
+        }
+        // LRU摘除
+        writeBuffer.offer(entry);
+        drain();
+        return entry;
+    }
+
+    /**
+     * 已从localCache删除的Entry，从LRU链表摘除，持有lruLock时调用
+     * @param entry
+     */
+    private void retire(Entry<K, V> entry) {
+        if (entry.state == Entry.RETIRED) {
+            return;
+        }
+        if (entry.state == Entry.LINKED) {
+            unlink(entry);
+        }
+        entry.state = Entry.RETIRED;
+        if (prefetcher != null) {
+            prefetcher.discard(entry);
         }
     }
 
     // LRU淘汰
     protected void lru() {
-        boolean wFlag = false;
+        // 竞争锁资源，其他set等待
+        lock(lruLock, "lruLock");
         try {
-            // 达到最大容量
-            if (full()) {
-                // 竞争锁资源，其他set等待
-                lruLock.lock();
-                wFlag = true;
-            }
-
-            boolean cas = wFlag;
-            do {
-                // 竞争淘汰资源
-                if (compareAndSetLRUFlagOffset(0, 1)) {
-                    _lru();
-                    cas = false;
-                }
-            } while (cas);
+            maintenance();
         } finally {
-            if (wFlag) {
-                lruLock.unlock();
-            }
+            lruLock.unlock();
         }
+        drain();
     }
 
-    private void _lru() {
+    /**
+     * 从head开始淘汰，直到低于高水位且head未过期，持有lruLock时调用
+     * 调用前需处理访问缓冲，见maintenance
+     * @return 淘汰的元素数
+     */
+    private int _lru() {
         LoggerUtils.debug("触发LRU淘汰逻辑");
-        for (; ; ) {
-            Node h = head;
-            if (h != null) {
-                Node n = h.next;
-
-                Entry<K, V> remove = h.entry;
-                // 没有下一个元素
-                if (n == null) {
-                    lruFlag = 0;
-                    break;
-                }
-
-                Entry entry = n.entry;
-
-                // 没有满 + 下一个元素没有超期
-                if (!highWaterMark() && entry != null && !isExpire(entry, now())) {
-                    lruFlag = 0;
-                    break;
-                }
-                if (compareAndSetHead(h, n)) {
-                    stat.incrLRU();
-                    // 淘汰成功，引用删除
-                    if (remove != null) {
-                        LoggerUtils.info("LRU淘汰元素:%s", remove.key);
-                        localCache.remove(remove.key);
-                    }
-                    h.entry = null;
-                    h.prev = null;
-                    h.next = null;
-                }
+        CacheEvents.Eviction event = new CacheEvents.Eviction();
+        event.begin();
+        int evicted = 0;
+        long now = now();
+        for (Entry<K, V> h = head; h != null; h = head) {
+            // 没有满 + 最久元素没有超期
+            if (!highWaterMark() && !isExpire(h, now)) {
+                break;
+            }
+            // 先从localCache删除：需获取分段锁，等待该key上进行中的写入
+            boolean removed = localCache.remove(h.key, h);
+            retire(h);
+            // 已被其他线程删除，删除记录尚在写缓冲中
+            if (removed) {
+                stat.incrLRU();
+                evicted++;
+                LoggerUtils.info("LRU淘汰元素:%s", h.key);
             }
         }
+        if (evicted > 0 && event.shouldCommit()) {
+            event.evicted = evicted;
+            event.size = localCache.size();
+            event.capacity = capacity;
+            event.commit();
+        }
+        return evicted;
+    }
+
+    /**
+     * 加锁并记录等待时间
+     * @param lock
+     * @param name
+     */
+    private void lock(Lock lock, String name) {
+        if (lock.tryLock()) {
+            return;
+        }
+        CacheEvents.LockWait event = new CacheEvents.LockWait();
+        event.begin();
+        lock.lock();
+        if (event.shouldCommit()) {
+            event.lock = name;
+            event.commit();
+        }
     }
 
     protected Entry<K, V> getEntry(K key) {
@@ -398,9 +866,172 @@ public class LRUCache<K, V> implements Cache<K, V> {
         return localCache.size();
     }
 
+    /**
+     * 访问数最多的k个key，未开启热点统计时返回空
+     * @param k
+     * @return
+     */
+    public List<HotKeys.HotKey<K>> topKeys(int k) {
+        if (hotKeys == null) {
+            return Collections.emptyList();
+        }
+        return hotKeys.topKeys(k);
+    }
+
+    /**
+     * 当前有效容量
+     * @return
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 调整有效容量，超出高水位时立即触发LRU淘汰
+     * @param capacity
+     */
+    public void resize(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        lock(lruLock, "lruLock");
+        try {
+            this.capacity = capacity;
+            this.hwmCapacity = (int) (capacity * 0.75);
+            // 处理原访问缓冲后按新容量重建
+            drainWrites();
+            clean();
+            this.buffer = newBuffer();
+            _lru();
+        } finally {
+            lruLock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * 调整最大容量，开启自适应容量时同时调整上限
+     * @param maximumSize
+     */
+    public void setMaximumSize(int maximumSize) {
+        if (memoryMonitor != null) {
+            memoryMonitor.setMaximumSize(maximumSize);
+        }
+        resize(maximumSize);
+    }
+
+    public long getExpireMillis() {
+        return expireMillis;
+    }
+
+    /**
+     * 修改全局超时时间，对之后新增/更新的数据生效
+     * @param expireMillis
+     */
+    public void setExpireMillis(long expireMillis) {
+        this.expireMillis = expireMillis;
+    }
+
+    public int getCleanUpFactor() {
+        return cleanUpFactor;
+    }
+
+    /**
+     * 修改访问缓冲容量因子，立即重建访问缓冲
+     * @param cleanUpFactor
+     */
+    public void setCleanUpFactor(int cleanUpFactor) {
+        lock(lruLock, "lruLock");
+        try {
+            this.cleanUpFactor = cleanUpFactor(cleanUpFactor);
+            clean();
+            this.buffer = newBuffer();
+        } finally {
+            lruLock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * 访问缓冲待处理数
+     * @return
+     */
+    public int cleanUpQueueDepth() {
+        return buffer.size();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 访问缓冲容量因子，范围[2, 10]
+     * @param factor
+     * @return
+     */
+    static int cleanUpFactor(int factor) {
+        return Math.max(2, Math.min(10, factor));
+    }
+
+    /**
+     * 按容量及因子创建访问缓冲
+     * @return
+     */
+    private AccessBuffer newBuffer() {
+        long size = Math.min(MAXIMUM_BUFFER_SIZE, Math.max(MINIMUM_BUFFER_SIZE, (long) capacity * cleanUpFactor));
+        AccessBuffer b = new AccessBuffer(Integer.highestOneBit((int) size - 1) << 1);
+        this.cleanUpCapacity = b.capacity();
+        this.hwmCleanUpCapacity = (int) (cleanUpCapacity * 0.75);
+        return b;
+    }
+
+    /**
+     * 释放内存监听等资源，写回全部待写回数据，注销MBean
+     */
+    public void shutdown() {
+        if (name != null) {
+            CacheRegistry.unregister(name);
+        }
+        release();
+    }
+
+    /**
+     * 停止预取、内存监听及写回线程
+     */
+    private void release() {
+        if (prefetcher != null) {
+            prefetcher.shutdown();
+        }
+        if (memoryMonitor != null) {
+            memoryMonitor.stop();
+        }
+        if (writeBehind != null) {
+            try {
+                writeBehind.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     // 数据是否有效
     protected boolean isExpire(Entry<K, V> entry, long time) {
-        return time - entry.time > expireMillis;
+        return time > entry.deadline;
+    }
+
+    /**
+     * 计算过期时间点，防止溢出
+     * @param now
+     * @param duration
+     * @return
+     */
+    protected static long deadline(long now, long duration) {
+        long deadline = now + duration;
+        // 溢出
+        if (duration > 0 && deadline < now) {
+            return Long.MAX_VALUE;
+        }
+        return deadline;
     }
 
     /**
@@ -419,6 +1050,25 @@ public class LRUCache<K, V> implements Cache<K, V> {
         return localCache.size() > this.capacity;
     }
 
+    /**
+     * 开启压缩时压缩存放的值
+     * @param value
+     * @return
+     */
+    protected V encode(V value) {
+        return compressor == null ? value : (V) compressor.compress(value);
+    }
+
+    /**
+     * Entry中的值，开启压缩时解压
+     * @param entry
+     * @return
+     */
+    protected V valueOf(Entry<K, V> entry) {
+        V value = entry.value;
+        return compressor == null ? value : (V) compressor.decompress(value);
+    }
+
     protected Entry<K, V> newEntry(V val, K key) {
         return new Entry(val, key);
     }
@@ -437,55 +1087,24 @@ public class LRUCache<K, V> implements Cache<K, V> {
         return stat;
     }
 
+    /**
+     * 全局超时时间的过期策略
+     */
+    class FixedExpiry implements Expiry<K, V> {
+        @Override
+        public long expireAfterCreate(K key, V value, long currentTime) {
+            return expireMillis;
+        }
 
-    private Lock purgeLock = new ReentrantLock();
-    private Lock lruLock = new ReentrantLock();
-
-    private static final Unsafe unsafe;
-    private static final long headOffset;
-    private static final long tailOffset;
-    private static final long nodeOffset;
-    private static final long lruFlagOffset;
-    private static final long cleanUpFlagOffset;
-
-    static {
-        try {
-            Class<?> clazz = Unsafe.class;
-            Field f = clazz.getDeclaredField("theUnsafe");
-            f.setAccessible(true);
-            unsafe = (Unsafe) f.get(clazz);
-            headOffset = unsafe.objectFieldOffset
-                    (LRUCache.class.getDeclaredField("head"));
-            tailOffset = unsafe.objectFieldOffset
-                    (LRUCache.class.getDeclaredField("tail"));
-            lruFlagOffset = unsafe.objectFieldOffset
-                    (LRUCache.class.getDeclaredField("lruFlag"));
-            cleanUpFlagOffset = unsafe.objectFieldOffset
-                    (LRUCache.class.getDeclaredField("cleanUpFlag"));
-            nodeOffset = unsafe.objectFieldOffset
-                    (Entry.class.getDeclaredField("node"));
-
-        } catch (Exception ex) { throw new Error(ex); }
-    }
-
-    protected final boolean compareAndSetHead(Node expect, Node update) {
-        return unsafe.compareAndSwapObject(this, headOffset, expect, update);
-    }
-
-    protected final boolean compareAndSetTail(Node expect, Node update) {
-        return unsafe.compareAndSwapObject(this, tailOffset, expect, update);
-    }
-
-    protected final boolean compareAndSetNode(Entry<K, V> entry, Node expect, Node update) {
-        return unsafe.compareAndSwapObject(entry, nodeOffset, expect, update);
-    }
-
-    protected final boolean compareAndSetLRUFlagOffset(int expect, int update) {
-        return unsafe.compareAndSwapInt(this, lruFlagOffset, expect, update);
-    }
+        @Override
+        public long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+            return expireMillis;
+        }
 
-    protected final boolean compareAndSetCleanUpFlagOffset(int expect, int update) {
-        return unsafe.compareAndSwapInt(this, cleanUpFlagOffset, expect, update);
+        @Override
+        public long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 
     static public class StatImp implements Stat {
@@ -511,6 +1130,49 @@ public class LRUCache<K, V> implements Cache<K, V> {
             return 0;
         }
 
+        @Override
+        public void incrCompress(long rawBytes, long compressedBytes, long nanos) {
+        }
+        @Override
+        public void incrDecompress(long nanos) {
+        }
+        @Override
+        public int incrPrefetch() {
+            return 0;
+        }
+        @Override
+        public int incrPrefetchHit() {
+            return 0;
+        }
+        @Override
+        public int getGet() {
+            return 0;
+        }
+        @Override
+        public int getHits() {
+            return 0;
+        }
+        @Override
+        public int getLRU() {
+            return 0;
+        }
+        @Override
+        public int getCleanup() {
+            return 0;
+        }
+        @Override
+        public int getSet() {
+            return 0;
+        }
+        @Override
+        public int getPrefetch() {
+            return 0;
+        }
+        @Override
+        public int getPrefetchHit() {
+            return 0;
+        }
+
         @Override
         public void print() {
 
@@ -528,6 +1190,16 @@ public class LRUCache<K, V> implements Cache<K, V> {
 
         AtomicInteger set = new AtomicInteger();
 
+        AtomicLong compress = new AtomicLong();
+        AtomicLong compressRawBytes = new AtomicLong();
+        AtomicLong compressedBytes = new AtomicLong();
+        AtomicLong compressNanos = new AtomicLong();
+        AtomicLong decompress = new AtomicLong();
+        AtomicLong decompressNanos = new AtomicLong();
+
+        AtomicInteger prefetch = new AtomicInteger();
+        AtomicInteger prefetchHit = new AtomicInteger();
+
         @Override
         public int incrGet() {
             return get.incrementAndGet();
@@ -550,6 +1222,59 @@ public class LRUCache<K, V> implements Cache<K, V> {
             return hits.incrementAndGet();
         }
 
+        @Override
+        public void incrCompress(long rawBytes, long compressedBytes, long nanos) {
+            compress.incrementAndGet();
+            compressRawBytes.addAndGet(rawBytes);
+            this.compressedBytes.addAndGet(compressedBytes);
+            compressNanos.addAndGet(nanos);
+        }
+
+        @Override
+        public void incrDecompress(long nanos) {
+            decompress.incrementAndGet();
+            decompressNanos.addAndGet(nanos);
+        }
+
+        @Override
+        public int incrPrefetch() {
+            return prefetch.incrementAndGet();
+        }
+
+        @Override
+        public int incrPrefetchHit() {
+            return prefetchHit.incrementAndGet();
+        }
+
+        @Override
+        public int getGet() {
+            return get.get();
+        }
+        @Override
+        public int getHits() {
+            return hits.get();
+        }
+        @Override
+        public int getLRU() {
+            return lru.get();
+        }
+        @Override
+        public int getCleanup() {
+            return cleanup.get();
+        }
+        @Override
+        public int getSet() {
+            return set.get();
+        }
+        @Override
+        public int getPrefetch() {
+            return prefetch.get();
+        }
+        @Override
+        public int getPrefetchHit() {
+            return prefetchHit.get();
+        }
+
         @Override
         public void print() {
             LoggerUtils.error("Get : %s ", get.get());
@@ -557,42 +1282,112 @@ public class LRUCache<K, V> implements Cache<K, V> {
             LoggerUtils.error("Set : %s ", set.get());
             LoggerUtils.error("LRU : %s ", lru.get());
             LoggerUtils.error("cleanup : %s ", cleanup.get());
+            if (compress.get() > 0) {
+                LoggerUtils.error("compress : %s ratio : %.2f cpu : %sms ", compress.get(),
+                        (double) compressRawBytes.get() / Math.max(1, compressedBytes.get()),
+                        compressNanos.get() / 1000000);
+                LoggerUtils.error("decompress : %s cpu : %sms ", decompress.get(), decompressNanos.get() / 1000000);
+            }
+            if (prefetch.get() > 0) {
+                LoggerUtils.error("prefetch : %s hits : %s accuracy : %.2f ", prefetch.get(), prefetchHit.get(),
+                        (double) prefetchHit.get() / prefetch.get());
+            }
         }
     }
 
     /**
-     * K-V Entry
+     * K-V Entry，同时作为LRU链表节点
      * @param <K>
      * @param <V>
      */
     static public class Entry<K, V> {
-        V value;
+        // 未加入LRU
+        static final int NEW = 0;
+        // 已加入LRU
+        static final int LINKED = 1;
+        // 已删除
+        static final int RETIRED = 2;
+
+        volatile V value;
         K key;
-        Node node;
-        long time;
+        /**
+         * 过期时间点
+         */
+        volatile long deadline;
+
+        // LRU链表，lruLock保护
+        Entry<K, V> prev;
+        Entry<K, V> next;
+        int state = NEW;
 
         public Entry(V value, K key){
             this.value  = value;
             this.key 	= key;
-            this.time = System.currentTimeMillis();
-            this.node = new Node(this);
         }
     }
 
     /**
-     * LRU NODE
+     * 访问缓冲
+     * 多线程写入，持有lruLock的单线程读取；已满或写入冲突时丢弃
      */
-    static public class Node {
-        public Node(Entry entry) {
-            this.entry = entry;
+    static final class AccessBuffer {
+        private final AtomicReferenceArray<Entry> slots;
+        private final int mask;
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+
+        AccessBuffer(int capacity) {
+            this.slots = new AtomicReferenceArray<Entry>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * 记录访问
+         * @param entry
+         * @return 当前待处理数
+         */
+        int offer(Entry entry) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            int size = (int) (tail - head);
+            // 已满
+            if (size >= slots.length()) {
+                return size;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                slots.lazySet((int) (tail & mask), entry);
+                return size + 1;
+            }
+            // 写入冲突，丢弃
+            return size;
         }
 
-        Entry entry;
-        Node prev;
-        Node next;
+        /**
+         * 取出访问记录，持有lruLock时调用
+         * @return
+         */
+        Entry poll() {
+            long head = readCounter;
+            if (head == writeCounter.get()) {
+                return null;
+            }
+            int index = (int) (head & mask);
+            Entry entry = slots.get(index);
+            // 写入线程尚未完成
+            if (entry == null) {
+                return null;
+            }
+            slots.lazySet(index, null);
+            readCounter = head + 1;
+            return entry;
+        }
+
+        int size() {
+            return (int) (writeCounter.get() - readCounter);
+        }
 
-        boolean isolated() {
-            return prev == null && next == null;
+        int capacity() {
+            return slots.length();
         }
     }
 
@@ -13,6 +13,10 @@ import java.util.concurrent.TimeUnit;
  */
 public class LRUCacheBuilder<K, V> {
 
+    /**
+     * 注册名
+     */
+    private String name;
     /**
      * 最大容量
      */
@@ -21,10 +25,66 @@ public class LRUCacheBuilder<K, V> {
      * 超时设置
      */
     private long expireMillis = -1;
+    /**
+     * 过期策略
+     */
+    private Expiry<K, V> expiry;
     /**
      * cleanup因子
      */
     private int cleanUpFactor = -1;
+    /**
+     * 写回器
+     */
+    private CacheWriter<K, V> writer;
+    /**
+     * 单批写回数
+     */
+    private int writeBatchSize = 100;
+    /**
+     * 写回间隔
+     */
+    private long writeFlushMillis = 1000;
+    /**
+     * 压缩阈值(字节)，0不压缩
+     */
+    private int compressThreshold = 0;
+    /**
+     * 解压热点集合大小
+     */
+    private int compressHotSetSize = 0;
+    /**
+     * 热点key计数器数量
+     */
+    private int hotKeysCapacity = 0;
+    /**
+     * 热点key采样率
+     */
+    private int hotKeysSampleRate = 1;
+    /**
+     * 自适应容量
+     */
+    private boolean adaptive = false;
+    /**
+     * 自适应最小容量
+     */
+    private int minimumSize = 1;
+    /**
+     * 每秒最大预取数，0不预取
+     */
+    private int prefetchPerSecond = 0;
+    /**
+     * 预取线程数
+     */
+    private int prefetchThreads = 1;
+    /**
+     * 预取批量加载器
+     */
+    private BatchValueLoader<K, V> prefetchLoader;
+
+    public String getName() {
+        return name;
+    }
 
     public int getMaximumSize() {
         return maximumSize;
@@ -34,14 +94,76 @@ public class LRUCacheBuilder<K, V> {
         return expireMillis;
     }
 
+    public Expiry<K, V> getExpiry() {
+        return expiry;
+    }
+
     public int getCleanUpFactor() {
         return cleanUpFactor;
     }
 
+    public CacheWriter<K, V> getWriter() {
+        return writer;
+    }
+
+    public int getWriteBatchSize() {
+        return writeBatchSize;
+    }
+
+    public long getWriteFlushMillis() {
+        return writeFlushMillis;
+    }
+
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    public int getCompressHotSetSize() {
+        return compressHotSetSize;
+    }
+
+    public int getHotKeysCapacity() {
+        return hotKeysCapacity;
+    }
+
+    public int getHotKeysSampleRate() {
+        return hotKeysSampleRate;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    public int getMinimumSize() {
+        return minimumSize;
+    }
+
+    public int getPrefetchPerSecond() {
+        return prefetchPerSecond;
+    }
+
+    public int getPrefetchThreads() {
+        return prefetchThreads;
+    }
+
+    public BatchValueLoader<K, V> getPrefetchLoader() {
+        return prefetchLoader;
+    }
+
     public static LRUCacheBuilder<Object, Object> newBuilder() {
         return new LRUCacheBuilder<Object, Object>();
     }
 
+    /**
+     * MBean注册名，设置后缓存注册为MBean并被注册表持有，需调用shutdown注销；未设置时不注册
+     * @param name
+     * @return
+     */
+    public LRUCacheBuilder<K, V> name(String name) {
+        this.name = name;
+        return this;
+    }
+
     public LRUCacheBuilder<K, V> maximumSize(int size) {
         this.maximumSize = size;
         return this;
@@ -52,11 +174,106 @@ public class LRUCacheBuilder<K, V> {
         return this;
     }
 
+    /**
+     * 异步写回，set/compute/merge/replace的更新按key合并后批量写回
+     * @param writer
+     * @param batchSize 达到batchSize立即写回
+     * @param flushInterval 写回间隔
+     * @param unit
+     * @return
+     */
+    public LRUCacheBuilder<K, V> writeBehind(CacheWriter<K, V> writer, int batchSize, long flushInterval, TimeUnit unit) {
+        this.writer = writer;
+        this.writeBatchSize = batchSize;
+        this.writeFlushMillis = unit.toMillis(flushInterval);
+        return this;
+    }
+
+    /**
+     * 超过threshold字节的String/byte[]压缩存放
+     * @param threshold
+     * @return
+     */
+    public LRUCacheBuilder<K, V> compress(int threshold) {
+        this.compressThreshold = threshold;
+        return this;
+    }
+
+    /**
+     * 缓存最近解压的值，避免热点数据反复解压
+     * @param size
+     * @return
+     */
+    public LRUCacheBuilder<K, V> compressHotSet(int size) {
+        this.compressHotSetSize = size;
+        return this;
+    }
+
+    /**
+     * 开启热点key统计
+     * @param capacity 计数器数量，决定内存占用及精度
+     * @param sampleRate 每sampleRate次get采样一次
+     * @return
+     */
+    public LRUCacheBuilder<K, V> hotKeys(int capacity, int sampleRate) {
+        this.hotKeysCapacity = capacity;
+        this.hotKeysSampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * 根据堆内存压力在[minimumSize, maximumSize]之间调整有效容量
+     * @param minimumSize
+     * @return
+     */
+    public LRUCacheBuilder<K, V> adaptive(int minimumSize) {
+        this.adaptive = true;
+        this.minimumSize = minimumSize;
+        return this;
+    }
+
+    /**
+     * 根据未命中规律后台预取
+     * @param maxPerSecond 每秒最大预取数
+     * @return
+     */
+    public LRUCacheBuilder<K, V> prefetch(int maxPerSecond) {
+        return prefetch(maxPerSecond, 1);
+    }
+
+    public LRUCacheBuilder<K, V> prefetch(int maxPerSecond, int threads) {
+        return prefetch(maxPerSecond, threads, null);
+    }
+
+    /**
+     * 根据未命中规律后台预取，每组预测的key一次批量加载
+     * @param maxPerSecond 每秒最大预取数
+     * @param threads 预取线程数
+     * @param batchLoader 批量加载器，为null时逐个调用ValueLoader
+     * @return
+     */
+    public LRUCacheBuilder<K, V> prefetch(int maxPerSecond, int threads, BatchValueLoader<K, V> batchLoader) {
+        this.prefetchPerSecond = maxPerSecond;
+        this.prefetchThreads = threads;
+        this.prefetchLoader = batchLoader;
+        return this;
+    }
+
     public LRUCacheBuilder<K, V> expire(long duration, TimeUnit unit) {
         this.expireMillis = unit.toMillis(duration);
         return this;
     }
 
+    /**
+     * 按Entry计算存活时间，优先于expire
+     * @param expiry
+     * @return
+     */
+    public LRUCacheBuilder<K, V> expireAfter(Expiry<K, V> expiry) {
+        this.expiry = expiry;
+        return this;
+    }
+
     public <K1 extends K, V1 extends V> Cache<K1, V1> build(ValueLoader<K1, V1> loader) {
         return new LRUCache<K1, V1>(this, loader);
     }
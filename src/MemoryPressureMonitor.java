@@ -0,0 +1,267 @@
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存压力监听
+ * 按GC后的堆使用率判断压力(GC前的使用率包含未回收的垃圾，不能作为依据)：
+ * 1. 老年代GC后使用量超过阈值(collection usage threshold)，或Full GC后使用率超过HIGH_RATIO时收缩有效容量
+ * 2. GC后使用率低于LOW_RATIO时逐步恢复
+ * 收缩后SHRINK_INTERVAL_MILLIS内不再收缩或恢复，等待上次收缩释放的内存被回收
+ */
+public class MemoryPressureMonitor implements NotificationListener {
+    /**
+     * GC通知类型
+     */
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+    /**
+     * 高压阈值
+     */
+    static final double HIGH_RATIO = 0.85;
+    /**
+     * 健康阈值
+     */
+    static final double LOW_RATIO = 0.60;
+    /**
+     * 收缩比例
+     */
+    static final double SHRINK_FACTOR = 0.5;
+    /**
+     * 恢复比例
+     */
+    static final double GROW_FACTOR = 1.25;
+    /**
+     * 最小收缩间隔
+     */
+    static final long SHRINK_INTERVAL_MILLIS = 5000;
+
+    private final LRUCache<?, ?> cache;
+
+    private volatile int minimumSize;
+
+    private volatile int maximumSize;
+
+    /**
+     * 已注册的通知源
+     */
+    private final List<NotificationEmitter> emitters = new ArrayList<NotificationEmitter>();
+
+    /**
+     * 设置过阈值的内存池及原阈值，最后一个监听stop时恢复，类锁保护
+     * collection usage threshold为JVM全局设置，多个缓存共用
+     */
+    private static final Map<String, Long> thresholds = new HashMap<String, Long>();
+    /**
+     * 使用阈值的监听数，类锁保护
+     */
+    private static int thresholdUsers;
+
+    /**
+     * 是否已start
+     */
+    private boolean started;
+
+    /**
+     * 上次收缩时间
+     */
+    private final AtomicLong lastShrink = new AtomicLong();
+
+    public MemoryPressureMonitor(LRUCache<?, ?> cache, int minimumSize, int maximumSize) {
+        this.cache = cache;
+        this.minimumSize = Math.max(1, Math.min(minimumSize, maximumSize));
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * 注册堆内存GC后阈值及GC通知
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        acquireThresholds();
+
+        register(ManagementFactory.getMemoryMXBean());
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            register(gc);
+        }
+    }
+
+    /**
+     * 取消注册
+     */
+    public synchronized void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        synchronized (emitters) {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (ListenerNotFoundException e) {
+                    // ignore
+                }
+            }
+            emitters.clear();
+        }
+        releaseThresholds();
+    }
+
+    /**
+     * 第一个监听设置老年代GC后阈值
+     */
+    private static synchronized void acquireThresholds() {
+        if (thresholdUsers++ > 0) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            // 只设置老年代(Eden/Survivor不支持usage threshold)，其他监听者已设置阈值时不覆盖
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported()
+                    && max > 0 && pool.getCollectionUsageThreshold() == 0) {
+                thresholds.put(pool.getName(), pool.getCollectionUsageThreshold());
+                pool.setCollectionUsageThreshold((long) (max * HIGH_RATIO));
+            }
+        }
+    }
+
+    /**
+     * 最后一个监听恢复原阈值
+     */
+    private static synchronized void releaseThresholds() {
+        if (--thresholdUsers > 0) {
+            return;
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            Long previous = thresholds.get(pool.getName());
+            if (previous != null) {
+                pool.setCollectionUsageThreshold(previous);
+            }
+        }
+        thresholds.clear();
+    }
+
+    private void register(Object bean) {
+        if (bean instanceof NotificationEmitter) {
+            NotificationEmitter emitter = (NotificationEmitter) bean;
+            emitter.addNotificationListener(this, null, null);
+            synchronized (emitters) {
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            LoggerUtils.info("GC后堆内存超过阈值");
+            shrink();
+        } else if (GC_NOTIFICATION.equals(type)) {
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            double ratio = heapRatio(info.getGcInfo().getMemoryUsageAfterGc());
+            // Young GC后老年代仍包含垃圾，只按Full GC的结果收缩
+            if (ratio > HIGH_RATIO && isMajor(info)) {
+                shrink();
+            } else if (ratio < LOW_RATIO) {
+                grow();
+            }
+        }
+    }
+
+    /**
+     * 收缩有效容量，距上次收缩不足SHRINK_INTERVAL_MILLIS时忽略
+     */
+    void shrink() {
+        long now = System.currentTimeMillis();
+        long last = lastShrink.get();
+        if (now - last < SHRINK_INTERVAL_MILLIS || !lastShrink.compareAndSet(last, now)) {
+            return;
+        }
+        int current = cache.capacity();
+        int target = Math.max(minimumSize, (int) (current * SHRINK_FACTOR));
+        if (target < current) {
+            LoggerUtils.info("内存压力，收缩容量:%s -> %s", current, target);
+            cache.resize(target);
+        }
+    }
+
+    /**
+     * 恢复有效容量，距上次收缩不足SHRINK_INTERVAL_MILLIS时忽略
+     */
+    void grow() {
+        if (System.currentTimeMillis() - lastShrink.get() < SHRINK_INTERVAL_MILLIS) {
+            return;
+        }
+        int current = cache.capacity();
+        int target = (int) Math.min((long) maximumSize, Math.max(current + 1L, (long) (current * GROW_FACTOR)));
+        if (target > current) {
+            LoggerUtils.info("内存恢复，扩大容量:%s -> %s", current, target);
+            cache.resize(target);
+        }
+    }
+
+    /**
+     * GC后堆内存使用率
+     * @param afterGc 各内存池GC后使用量
+     * @return
+     */
+    static double heapRatio(Map<String, MemoryUsage> afterGc) {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = afterGc.get(pool.getName());
+            if (pool.getType() == MemoryType.HEAP && usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        // G1的Eden/Survivor max为-1，不能按内存池累加，使用整个堆的上限
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+        return max > 0 ? (double) used / max : 0;
+    }
+
+    /**
+     * 是否Full GC
+     * @param info
+     * @return
+     */
+    static boolean isMajor(GarbageCollectionNotificationInfo info) {
+        return info.getGcAction().contains("major");
+    }
+
+    public int getMinimumSize() {
+        return minimumSize;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * 调整容量上限
+     * @param maximumSize
+     */
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+        this.minimumSize = Math.min(minimumSize, maximumSize);
+    }
+}
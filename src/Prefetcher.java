@@ -0,0 +1,362 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预取
+ * 根据未命中的key学习访问规律，后台批量加载预测的key：
+ * 1. 步长：同一线程连续未命中的Integer/Long key步长相同时，预取之后的depth个key
+ * 2. 关联：同一线程中A未命中后紧接着B未命中的次数达到阈值时，A未命中即预取B
+ *    每学习AGING_PERIOD次计数减半，计数为0的关联删除，腾出位置学习新的关联
+ * 配置BatchValueLoader时每组预测的key一次批量加载，否则逐个调用ValueLoader
+ * 每秒预取数不超过maxPerSecond，任务队列满时丢弃
+ */
+public class Prefetcher<K, V> {
+    /**
+     * 步长预取深度
+     */
+    static final int DEPTH = 4;
+    /**
+     * 关联key最大记录数
+     */
+    static final int MAXIMUM_SUCCESSORS = 4096;
+    /**
+     * 关联预取阈值
+     */
+    static final int SUCCESSOR_THRESHOLD = 2;
+    /**
+     * 关联计数衰减周期(学习次数)
+     */
+    static final int AGING_PERIOD = MAXIMUM_SUCCESSORS;
+    /**
+     * 任务队列容量
+     */
+    static final int QUEUE_SIZE = 64;
+
+    private final LRUCache<K, V> cache;
+
+    /**
+     * 批量加载器，未配置时为null
+     */
+    private final BatchValueLoader<K, V> batchLoader;
+
+    /**
+     * 每秒最大预取数
+     */
+    private final int maxPerSecond;
+
+    /**
+     * 高32位为当前秒，低32位为已用预取数，一次CAS同时更新
+     */
+    private final AtomicLong window = new AtomicLong();
+
+    /**
+     * A -> 紧接着未命中的B
+     */
+    private final ConcurrentHashMap<K, Successor<K>> successors = new ConcurrentHashMap<K, Successor<K>>();
+
+    /**
+     * 关联数，ConcurrentHashMap.size()需累加全部计数单元
+     */
+    private final AtomicInteger successorCount = new AtomicInteger();
+
+    /**
+     * 学习次数，用于触发衰减
+     */
+    private final AtomicInteger learned = new AtomicInteger();
+
+    /**
+     * 加载中的key，避免重复预取
+     */
+    private final Set<K> loading = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 预取后尚未命中的Entry
+     */
+    private final Set<LRUCache.Entry<K, V>> prefetched = ConcurrentHashMap.newKeySet();
+
+    private final ThreadLocal<History<K>> history = new ThreadLocal<History<K>>() {
+        @Override
+        protected History<K> initialValue() {
+            return new History<K>();
+        }
+    };
+
+    private final ThreadPoolExecutor executor;
+
+    public Prefetcher(LRUCache<K, V> cache, int maxPerSecond, int threads, BatchValueLoader<K, V> batchLoader) {
+        if (maxPerSecond <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("maxPerSecond and threads must be positive");
+        }
+        this.cache = cache;
+        this.batchLoader = batchLoader;
+        this.maxPerSecond = maxPerSecond;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_SIZE), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cache-prefetch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+                // 队列已满，丢弃本次预取
+                loading.removeAll(((LoadTask) r).keys);
+            }
+        });
+    }
+
+    /**
+     * 记录未命中并触发预取
+     * @param key
+     */
+    public void onMiss(K key) {
+        History<K> h = history.get();
+        K last = h.lastKey;
+        List<K> predicted = new ArrayList<K>(DEPTH + 1);
+
+        // 步长
+        long stride = stride(last, key);
+        if (stride != 0 && stride == h.stride) {
+            for (int i = 1; i <= DEPTH; i++) {
+                K next = offset(key, stride * i);
+                if (next != null) {
+                    predicted.add(next);
+                }
+            }
+        }
+        h.stride = stride;
+        h.lastKey = key;
+
+        // 关联
+        if (last != null && !last.equals(key)) {
+            learn(last, key);
+        }
+        Successor<K> successor = successors.get(key);
+        if (successor != null && successor.count >= SUCCESSOR_THRESHOLD) {
+            predicted.add(successor.key);
+        }
+
+        if (!predicted.isEmpty()) {
+            submit(predicted);
+        }
+    }
+
+    /**
+     * 预取的Entry已加入缓存，持有key的分段锁时调用，保证先于discard
+     * @param entry
+     */
+    void added(LRUCache.Entry<K, V> entry) {
+        prefetched.add(entry);
+        cache.stat().incrPrefetch();
+    }
+
+    /**
+     * 命中时调用，统计预取命中
+     * @param entry
+     */
+    public void onHit(LRUCache.Entry<K, V> entry) {
+        if (!prefetched.isEmpty() && prefetched.remove(entry)) {
+            cache.stat().incrPrefetchHit();
+        }
+    }
+
+    /**
+     * Entry被删除
+     * @param entry
+     */
+    public void discard(LRUCache.Entry<K, V> entry) {
+        if (!prefetched.isEmpty()) {
+            prefetched.remove(entry);
+        }
+    }
+
+    /**
+     * 缓存清空
+     */
+    public void clear() {
+        prefetched.clear();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void learn(K last, K key) {
+        // 定期衰减，过时的关联被删除
+        if (learned.incrementAndGet() % AGING_PERIOD == 0) {
+            age();
+        }
+        Successor<K> successor = successors.get(last);
+        if (successor == null) {
+            // 先占用计数，超出上限或已存在时归还
+            if (successorCount.incrementAndGet() > MAXIMUM_SUCCESSORS
+                    || successors.putIfAbsent(last, new Successor<K>(key)) != null) {
+                successorCount.decrementAndGet();
+            }
+        } else if (key.equals(successor.key)) {
+            // 近似计数，并发丢失无影响
+            successor.count++;
+        } else {
+            // 关联变化，重新计数
+            successor.key = key;
+            successor.count = 1;
+        }
+    }
+
+    /**
+     * 关联计数减半，删除计数为0的关联
+     */
+    private void age() {
+        for (Map.Entry<K, Successor<K>> e : successors.entrySet()) {
+            Successor<K> successor = e.getValue();
+            // 近似计数，并发丢失无影响
+            successor.count >>= 1;
+            if (successor.count == 0 && successors.remove(e.getKey(), successor)) {
+                successorCount.decrementAndGet();
+            }
+        }
+    }
+
+    private void submit(List<K> predicted) {
+        final List<K> keys = new ArrayList<K>(predicted.size());
+        for (K k : predicted) {
+            if (cache.getEntry(k) == null && loading.add(k)) {
+                keys.add(k);
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        // 超出预取带宽
+        if (!tryAcquire(keys.size())) {
+            loading.removeAll(keys);
+            return;
+        }
+        executor.execute(new LoadTask(keys));
+    }
+
+    private void load(List<K> keys) {
+        if (batchLoader != null) {
+            loadBatch(keys);
+            return;
+        }
+        ValueLoader<K, V> loader = cache.valueLoader();
+        for (K key : keys) {
+            try {
+                cache.putPrefetched(key, cache.load(key, loader));
+            } catch (Throwable e) {
+                LoggerUtils.error("预取失败:%s %s", key, e);
+            } finally {
+                loading.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 一次调用加载整组key，不存在的key不加入
+     * @param keys
+     */
+    private void loadBatch(List<K> keys) {
+        try {
+            Map<K, V> values = batchLoader.getAll(keys);
+            if (values == null) {
+                return;
+            }
+            for (K key : keys) {
+                cache.putPrefetched(key, values.get(key));
+            }
+        } catch (Throwable e) {
+            LoggerUtils.error("预取失败:%s %s", keys, e);
+        } finally {
+            loading.removeAll(keys);
+        }
+    }
+
+    /**
+     * 每秒预取数限制，超出时不占用
+     * @param permits
+     * @return
+     */
+    private boolean tryAcquire(int permits) {
+        long second = System.currentTimeMillis() / 1000;
+        for (;;) {
+            long current = window.get();
+            // 进入新的一秒时重新计数
+            long used = current >>> 32 == second ? current & 0xFFFFFFFFL : 0;
+            if (used + permits > maxPerSecond) {
+                return false;
+            }
+            if (window.compareAndSet(current, second << 32 | (used + permits))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 数值key步长
+     * @param last
+     * @param key
+     * @return 非数值key返回0
+     */
+    static long stride(Object last, Object key) {
+        if ((last instanceof Integer || last instanceof Long) && last.getClass() == key.getClass()) {
+            return ((Number) key).longValue() - ((Number) last).longValue();
+        }
+        return 0;
+    }
+
+    static <K> K offset(K key, long delta) {
+        if (key instanceof Integer) {
+            long next = (Integer) key + delta;
+            if (next < Integer.MIN_VALUE || next > Integer.MAX_VALUE) {
+                return null;
+            }
+            return (K) Integer.valueOf((int) next);
+        }
+        if (key instanceof Long) {
+            return (K) Long.valueOf((Long) key + delta);
+        }
+        return null;
+    }
+
+    class LoadTask implements Runnable {
+        final List<K> keys;
+
+        LoadTask(List<K> keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public void run() {
+            load(keys);
+        }
+    }
+
+    static class History<K> {
+        K lastKey;
+        long stride;
+    }
+
+    static class Successor<K> {
+        volatile K key;
+        volatile int count = 1;
+
+        Successor(K key) {
+            this.key = key;
+        }
+    }
+}
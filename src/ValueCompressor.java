@@ -0,0 +1,165 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 值压缩
+ * 超过阈值的String/byte[]使用Deflater压缩后存放，读取时解压
+ * 可选的解压热点集合缓存最近解压的值，避免热点数据反复解压
+ */
+public class ValueCompressor {
+    /**
+     * 压缩阈值(字节)
+     */
+    private final int threshold;
+
+    private final Cache.Stat stat;
+
+    /**
+     * 解压热点集合，按Compressed直接映射，无锁
+     */
+    private final AtomicReferenceArray<Decompressed> hotSet;
+    private final int mask;
+
+    private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater();
+        }
+    };
+
+    public ValueCompressor(int threshold, int hotSetSize, Cache.Stat stat) {
+        this.threshold = threshold;
+        this.stat = stat;
+        if (hotSetSize > 0) {
+            int size = Integer.highestOneBit(Math.max(hotSetSize - 1, 1)) << 1;
+            this.hotSet = new AtomicReferenceArray<Decompressed>(size);
+            this.mask = size - 1;
+        } else {
+            this.hotSet = null;
+            this.mask = 0;
+        }
+    }
+
+    /**
+     * 压缩，不满足条件时原样返回
+     * @param value
+     * @return
+     */
+    public Object compress(Object value) {
+        byte[] raw;
+        boolean string;
+        if (value instanceof String) {
+            String s = (String) value;
+            // 字符数不足时UTF-8字节数也不足
+            if (s.length() < threshold) {
+                return value;
+            }
+            raw = s.getBytes(StandardCharsets.UTF_8);
+            string = true;
+        } else if (value instanceof byte[]) {
+            raw = (byte[]) value;
+            string = false;
+        } else {
+            return value;
+        }
+        if (raw.length < threshold) {
+            return value;
+        }
+
+        long start = System.nanoTime();
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        byte[] buf = new byte[raw.length];
+        int length = 0;
+        while (!deflater.finished() && length < buf.length) {
+            length += deflater.deflate(buf, length, buf.length - length);
+        }
+        // 压缩后未变小
+        if (!deflater.finished()) {
+            return value;
+        }
+        Compressed compressed = new Compressed(Arrays.copyOf(buf, length), raw.length, string);
+        stat.incrCompress(raw.length, length, System.nanoTime() - start);
+        return compressed;
+    }
+
+    /**
+     * 解压，非压缩数据原样返回
+     * @param value
+     * @return
+     */
+    public Object decompress(Object value) {
+        if (!(value instanceof Compressed)) {
+            return value;
+        }
+        Compressed compressed = (Compressed) value;
+        int index = 0;
+        if (hotSet != null) {
+            index = System.identityHashCode(compressed) & mask;
+            Decompressed d = hotSet.get(index);
+            if (d != null && d.source == compressed) {
+                return d.value;
+            }
+        }
+
+        long start = System.nanoTime();
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(compressed.data);
+        byte[] raw = new byte[compressed.length];
+        try {
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        }
+        Object result = compressed.string ? new String(raw, StandardCharsets.UTF_8) : raw;
+        stat.incrDecompress(System.nanoTime() - start);
+
+        if (hotSet != null) {
+            hotSet.lazySet(index, new Decompressed(compressed, result));
+        }
+        return result;
+    }
+
+    /**
+     * 压缩后的值
+     */
+    static final class Compressed {
+        final byte[] data;
+        // 压缩前字节数
+        final int length;
+        final boolean string;
+
+        Compressed(byte[] data, int length, boolean string) {
+            this.data = data;
+            this.length = length;
+            this.string = string;
+        }
+    }
+
+    static final class Decompressed {
+        final Compressed source;
+        final Object value;
+
+        Decompressed(Compressed source, Object value) {
+            this.source = source;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 异步写回队列
+ * 更新按key合并(最后一次写入生效)，达到batchSize或每隔flushInterval由后台线程批量写回，
+ * 写回失败按指数退避重试，仍失败时重新入队等待下次写回；shutdown时写回全部数据
+ * shutdown后不再入队，调用方应先checkOpen，检查后并发shutdown的数据同步写回
+ */
+public class WriteBehindQueue<K, V> {
+    /**
+     * 单批最大重试次数
+     */
+    static final int MAX_RETRIES = 5;
+    /**
+     * 初始退避时间
+     */
+    static final long BASE_BACKOFF_MILLIS = 100;
+    /**
+     * 最大退避时间
+     */
+    static final long MAX_BACKOFF_MILLIS = 5000;
+    /**
+     * null值占位
+     */
+    private static final Object NULL = new Object();
+
+    private final CacheWriter<K, V> writer;
+
+    private final int batchSize;
+
+    /**
+     * 待写回数据，key -> 最后一次更新的值
+     */
+    private final ConcurrentHashMap<K, Object> pending = new ConcurrentHashMap<K, Object>();
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * 已提交写回任务
+     */
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * 入队持有读锁，shutdown持有写锁设置状态，保证最终写回前入队均已完成
+     */
+    private final ReentrantReadWriteLock shutdownLock = new ReentrantReadWriteLock();
+
+    public WriteBehindQueue(CacheWriter<K, V> writer, int batchSize, long flushInterval, TimeUnit unit) {
+        if (batchSize <= 0 || flushInterval <= 0) {
+            throw new IllegalArgumentException("batchSize and flushInterval must be positive");
+        }
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "cache-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush(false);
+            }
+        }, flushInterval, flushInterval, unit);
+    }
+
+    /**
+     * 已shutdown时抛出异常，修改缓存前调用
+     */
+    public void checkOpen() {
+        if (shutdown) {
+            throw new IllegalStateException("write-behind queue is shut down");
+        }
+    }
+
+    /**
+     * 加入待写回数据，已shutdown时同步写回
+     * @param key
+     * @param value
+     */
+    public void enqueue(K key, V value) {
+        shutdownLock.readLock().lock();
+        try {
+            if (!shutdown) {
+                pending.put(key, value == null ? NULL : value);
+                // 达到批量大小，提前写回；持有读锁时executor未shutdown，不会拒绝
+                if (pending.size() >= batchSize && flushing.compareAndSet(false, true)) {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            flushing.set(false);
+                            flush(false);
+                        }
+                    });
+                }
+                return;
+            }
+        } finally {
+            shutdownLock.readLock().unlock();
+        }
+        // checkOpen后并发shutdown，最终写回可能已完成
+        if (!write(Collections.singletonMap(key, value))) {
+            LoggerUtils.error("写回失败，丢弃数据:%s", key);
+        }
+    }
+
+    /**
+     * 待写回数据数
+     * @return
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 停止后台线程并写回全部数据
+     * @throws InterruptedException
+     */
+    public void shutdown() throws InterruptedException {
+        // 等待进行中的入队完成
+        shutdownLock.writeLock().lock();
+        try {
+            shutdown = true;
+        } finally {
+            shutdownLock.writeLock().unlock();
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        flush(true);
+        if (!pending.isEmpty()) {
+            LoggerUtils.error("写回失败，丢弃数据:%s", pending.size());
+        }
+    }
+
+    /**
+     * 批量写回
+     * @param all true时写回全部数据，否则写回至不足一批
+     */
+    private void flush(boolean all) {
+        while (!pending.isEmpty()) {
+            Map<K, V> batch = drain();
+            if (!write(batch)) {
+                // 重新入队，期间有更新时保留更新后的值
+                for (Map.Entry<K, V> e : batch.entrySet()) {
+                    pending.putIfAbsent(e.getKey(), e.getValue() == null ? NULL : e.getValue());
+                }
+                return;
+            }
+            if (!all && pending.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 取出一批数据
+     * @return
+     */
+    private Map<K, V> drain() {
+        Map<K, V> batch = new HashMap<K, V>(batchSize * 2);
+        Iterator<K> keys = pending.keySet().iterator();
+        while (keys.hasNext() && batch.size() < batchSize) {
+            K key = keys.next();
+            Object value = pending.remove(key);
+            if (value != null) {
+                batch.put(key, value == NULL ? null : (V) value);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 写回一批数据，失败时指数退避重试
+     * @param batch
+     * @return 是否成功
+     */
+    private boolean write(Map<K, V> batch) {
+        long backoff = BASE_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writer.write(batch);
+                LoggerUtils.debug("写回数据:%s", batch.size());
+                return true;
+            } catch (Exception e) {
+                LoggerUtils.error("写回失败(%s/%s):%s", attempt, MAX_RETRIES, e);
+                if (attempt >= MAX_RETRIES) {
+                    return false;
+                }
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+}